@@ -0,0 +1,135 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import de.sub.goobi.config.ConfigurationHelper;
+
+/**
+ * {@link S3DeletionClient} for the bucket configured in goobi_config.properties
+ */
+public class AmazonS3DeletionClient implements S3DeletionClient {
+
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    private static AmazonS3DeletionClient instance;
+
+    private final AmazonS3 s3;
+
+    private final String bucket;
+
+    public AmazonS3DeletionClient(AmazonS3 s3, String bucket) {
+        this.s3 = s3;
+        this.bucket = bucket;
+    }
+
+    /**
+     * Get a client with the same connection settings Goobi uses for its S3 storage. The client is created on first use and shared afterwards.
+     * 
+     * @return the client
+     */
+    public static synchronized AmazonS3DeletionClient getInstance() {
+        if (instance != null) {
+            return instance;
+        }
+        ConfigurationHelper conf = ConfigurationHelper.getInstance();
+        AmazonS3 s3;
+        if (conf.useCustomS3()) {
+            s3 = AmazonS3ClientBuilder.standard()
+                    .withEndpointConfiguration(new EndpointConfiguration(conf.getS3Endpoint(), "us-west-2"))
+                    .withPathStyleAccessEnabled(true)
+                    .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(conf.getS3AccessKeyID(), conf.getS3SecretAccessKey())))
+                    .build();
+        } else {
+            s3 = AmazonS3ClientBuilder.defaultClient();
+        }
+        instance = new AmazonS3DeletionClient(s3, conf.getS3Bucket());
+        return instance;
+    }
+
+    /**
+     * Get the key prefix for a folder below the metadata folder
+     * 
+     * @param folder the folder
+     * @return the prefix, ending with a slash
+     */
+    public static String getPrefix(Path folder) {
+        String key = StringUtils.removeStart(folder.toString(), ConfigurationHelper.getInstance().getMetadataFolder());
+        key = StringUtils.removeStart(key, "/");
+        return key.endsWith("/") ? key : key + "/";
+    }
+
+    @Override
+    public ObjectPage listObjects(String prefix, String continuationToken) throws IOException {
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket)
+                .withPrefix(prefix)
+                .withMaxKeys(S3BatchDeleter.MAX_KEYS_PER_REQUEST)
+                .withContinuationToken(continuationToken);
+        try {
+            ListObjectsV2Result result = s3.listObjectsV2(request);
+            List<String> keys = new ArrayList<>(result.getObjectSummaries().size());
+            List<Long> sizes = new ArrayList<>(result.getObjectSummaries().size());
+            for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                keys.add(summary.getKey());
+                sizes.add(summary.getSize());
+            }
+            return new ObjectPage(keys, result.isTruncated() ? result.getNextContinuationToken() : null, sizes);
+        } catch (AmazonServiceException e) {
+            throw translate(e);
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void deleteObjects(List<String> keys) throws IOException {
+        List<KeyVersion> keyVersions = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            keyVersions.add(new KeyVersion(key));
+        }
+        DeleteObjectsRequest request = new DeleteObjectsRequest(bucket).withKeys(keyVersions).withQuiet(true);
+        try {
+            s3.deleteObjects(request);
+        } catch (MultiObjectDeleteException e) {
+            // single keys failed, throttling is reported per key
+            boolean throttled = e.getErrors().stream().allMatch(error -> isThrottlingCode(error.getCode()));
+            if (throttled) {
+                throw new S3ThrottlingException(e.getErrors().size() + " objects were throttled", e);
+            }
+            throw new IOException(e.getErrors().size() + " objects could not be deleted: " + e.getErrors().get(0).getMessage(), e);
+        } catch (AmazonServiceException e) {
+            throw translate(e);
+        } catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static IOException translate(AmazonServiceException e) {
+        if (e.getStatusCode() == HTTP_SERVICE_UNAVAILABLE || isThrottlingCode(e.getErrorCode())) {
+            return new S3ThrottlingException(e.getErrorMessage(), e);
+        }
+        return new IOException(e);
+    }
+
+    private static boolean isThrottlingCode(String code) {
+        return "SlowDown".equals(code) || "Throttling".equals(code) || "RequestLimitExceeded".equals(code) || "ServiceUnavailable".equals(code);
+    }
+}
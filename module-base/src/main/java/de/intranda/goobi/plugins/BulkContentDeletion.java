@@ -0,0 +1,211 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Runs the content deletion of this plugin for a large number of processes.
+ *
+ * Each process is handled by its own plugin instance, using the configuration of the task with the given title, so the same folders are
+ * selected as if the task was executed within the workflow. The number of processes in work and the number of folders deleted at the same time
+ * are limited independently. Only the content is deleted, the tasks, metadata and properties of the processes are not changed. Every finished
+ * process is appended to a checkpoint file, an interrupted run skips these processes when it is started again with the same file. A dry run
+ * records its processes with an own status, so a later deletion with the same file does not skip the processes that were only planned.
+ */
+@Log4j2
+public class BulkContentDeletion {
+
+    private static final String STATUS_DONE = "done";
+    /** the deletion of the process was planned by a dry run, nothing was deleted */
+    private static final String STATUS_PLANNED = "planned";
+    private static final String STATUS_FAILED = "failed";
+
+    private final String stepTitle;
+
+    private final int processesInFlight;
+
+    private final Semaphore ioPermits;
+
+    private final Path checkpointFile;
+
+    /** only create a deletion plan for each process, nothing gets deleted */
+    @Setter
+    private boolean dryRun;
+
+    /**
+     * @param stepTitle title of the task that uses this plugin, its configuration is used for all processes
+     * @param processesInFlight maximum number of processes that are handled at the same time
+     * @param ioOperationsInFlight maximum number of folders that are deleted at the same time over all processes
+     * @param checkpointFile file to record the finished processes, used to resume an interrupted run
+     */
+    public BulkContentDeletion(String stepTitle, int processesInFlight, int ioOperationsInFlight, Path checkpointFile) {
+        this.stepTitle = stepTitle;
+        this.processesInFlight = Math.max(1, processesInFlight);
+        ioPermits = new Semaphore(Math.max(1, ioOperationsInFlight));
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Run the deletion for all processes matching a filter
+     *
+     * @param filter SQL condition for the process table, e.g. prozesse.ProjekteID = 3
+     * @return the summary
+     * @throws IOException if the checkpoint file cannot be used
+     */
+    public BulkDeletionSummary run(String filter) throws IOException {
+        return run(ProcessManager.getIdsForFilter(filter));
+    }
+
+    /**
+     * Run the deletion for the given processes
+     *
+     * @param processIds ids of the processes
+     * @return the summary
+     * @throws IOException if the checkpoint file cannot be used
+     */
+    public BulkDeletionSummary run(List<Integer> processIds) throws IOException {
+        long start = System.currentTimeMillis();
+        BulkDeletionSummary summary = new BulkDeletionSummary();
+        Set<Integer> finished = readCheckpoint();
+
+        ExecutorService executor = Executors.newFixedThreadPool(processesInFlight);
+        try (BufferedWriter checkpoint = Files.newBufferedWriter(checkpointFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            try {
+                for (Integer processId : processIds) {
+                    if (finished.contains(processId)) {
+                        summary.addResumed();
+                        continue;
+                    }
+                    executor.execute(() -> {
+                        String status = deleteContent(processId, summary);
+                        if (dryRun && STATUS_DONE.equals(status)) {
+                            status = STATUS_PLANNED;
+                        }
+                        if (status != null) {
+                            writeCheckpoint(checkpoint, processId, status);
+                        }
+                    });
+                }
+                executor.shutdown();
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.debug("Bulk deletion is still running: {}", summary);
+                }
+            } catch (InterruptedException e) {
+                // the running deletions still write to the checkpoint file, it is closed after they have stopped
+                executor.shutdownNow();
+                awaitTermination(executor);
+                Thread.currentThread().interrupt();
+            }
+        }
+        summary.setDurationMillis(System.currentTimeMillis() - start);
+        log.info("Bulk deletion finished, {}", summary);
+        return summary;
+    }
+
+    /**
+     * @return the permits for the folder deletions, shared by all processes of this run
+     */
+    Semaphore getIoPermits() {
+        return ioPermits;
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean terminated = false;
+        while (!terminated) {
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // keep waiting, the interrupt is restored by the caller
+            }
+            if (!terminated) {
+                log.debug("Waiting for the interrupted bulk deletion to stop");
+            }
+        }
+    }
+
+    /**
+     * Delete the content of a single process
+     *
+     * @param processId id of the process
+     * @param summary summary to update
+     * @return the status to write to the checkpoint file, or null if the process was skipped
+     */
+    String deleteContent(Integer processId, BulkDeletionSummary summary) {
+        try {
+            Process process = ProcessManager.getProcessById(processId);
+            Step step = null;
+            if (process != null) {
+                for (Step s : process.getSchritte()) {
+                    if (s.getTitel().equals(stepTitle)) {
+                        step = s;
+                        break;
+                    }
+                }
+            }
+            if (step == null) {
+                summary.addSkipped(processId);
+                return null;
+            }
+            DeleteContentPlugin plugin = new DeleteContentPlugin();
+            plugin.initialize(step, "");
+            plugin.setIoPermits(ioPermits);
+            plugin.setContentOnly(true);
+            if (dryRun) {
+                plugin.setDryRun(true);
+            }
+            if (plugin.execute()) {
+                summary.addSuccess();
+                return STATUS_DONE;
+            }
+        } catch (RuntimeException e) {
+            log.error("Error during bulk deletion of process {}", processId, e);
+        }
+        summary.addFailure(processId);
+        return STATUS_FAILED;
+    }
+
+    private Set<Integer> readCheckpoint() throws IOException {
+        Set<Integer> finished = new HashSet<>();
+        if (Files.exists(checkpointFile)) {
+            for (String line : Files.readAllLines(checkpointFile, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(";");
+                // failed processes are tried again, planned processes are only skipped by another dry run
+                if (parts.length == 2 && (STATUS_DONE.equals(parts[1]) || dryRun && STATUS_PLANNED.equals(parts[1]))) {
+                    finished.add(Integer.valueOf(parts[0]));
+                }
+            }
+        }
+        return finished;
+    }
+
+    private void writeCheckpoint(BufferedWriter checkpoint, Integer processId, String status) {
+        synchronized (checkpoint) {
+            try {
+                checkpoint.write(processId + ";" + status);
+                checkpoint.newLine();
+                checkpoint.flush();
+            } catch (IOException e) {
+                log.error("Cannot write checkpoint for process {}", processId, e);
+            }
+        }
+    }
+}
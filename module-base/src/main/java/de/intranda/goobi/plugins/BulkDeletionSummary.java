@@ -0,0 +1,68 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Result of a bulk deletion run
+ */
+public class BulkDeletionSummary {
+
+    @Getter
+    private int succeeded;
+    @Getter
+    private int failed;
+    @Getter
+    private int skipped;
+    /** processes that were already finished in an earlier, interrupted run */
+    @Getter
+    private int resumed;
+
+    private final List<Integer> failedProcessIds = new ArrayList<>();
+    private final List<Integer> skippedProcessIds = new ArrayList<>();
+
+    @Getter
+    private long durationMillis;
+
+    synchronized void addSuccess() {
+        succeeded++;
+    }
+
+    synchronized void addFailure(Integer processId) {
+        failed++;
+        failedProcessIds.add(processId);
+    }
+
+    synchronized void addSkipped(Integer processId) {
+        skipped++;
+        skippedProcessIds.add(processId);
+    }
+
+    synchronized void addResumed() {
+        resumed++;
+    }
+
+    void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public synchronized List<Integer> getFailedProcessIds() {
+        return Collections.unmodifiableList(new ArrayList<>(failedProcessIds));
+    }
+
+    /**
+     * @return processes without a task that uses this plugin
+     */
+    public synchronized List<Integer> getSkippedProcessIds() {
+        return Collections.unmodifiableList(new ArrayList<>(skippedProcessIds));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "succeeded: " + succeeded + ", failed: " + failed + ", skipped: " + skipped + ", already done: " + resumed + ", duration: "
+                + durationMillis + " ms";
+    }
+}
@@ -0,0 +1,70 @@
+package de.intranda.goobi.plugins;
+
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Selects the files of a deletion target that are deleted, all other files are kept.
+ *
+ * The rules use the syntax of {@link FileSystem#getPathMatcher(String)}, e.g. {@code glob:*.tif} or {@code regex:.*\.tmp}. Rules without a
+ * prefix are treated as glob patterns. Each rule is compared with the file name and with the path relative to the target folder. A file is
+ * selected, if it matches one of the include rules (or if there are none) and none of the exclude rules.
+ */
+public class ContentFilter {
+
+    @Getter
+    private final String target;
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+
+    private final List<PathMatcher> excludes = new ArrayList<>();
+
+    /**
+     * @param target type of the deletion target, e.g. master or alto
+     * @param includeRules rules for the files to delete
+     * @param excludeRules rules for the files to keep
+     */
+    public ContentFilter(String target, List<String> includeRules, List<String> excludeRules) {
+        this.target = target;
+        FileSystem fileSystem = FileSystems.getDefault();
+        for (String rule : includeRules) {
+            includes.add(fileSystem.getPathMatcher(toSyntax(rule)));
+        }
+        for (String rule : excludeRules) {
+            excludes.add(fileSystem.getPathMatcher(toSyntax(rule)));
+        }
+    }
+
+    private static String toSyntax(String rule) {
+        return rule.startsWith("glob:") || rule.startsWith("regex:") ? rule : "glob:" + rule;
+    }
+
+    /**
+     * Check if a file gets deleted
+     *
+     * @param relativePath path of the file relative to the target folder
+     * @return true, if the file is selected for deletion
+     */
+    public boolean matches(Path relativePath) {
+        if (!includes.isEmpty() && !matchesAny(includes, relativePath)) {
+            return false;
+        }
+        return !matchesAny(excludes, relativePath);
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relativePath) {
+        Path fileName = relativePath.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath) || (fileName != null && matcher.matches(fileName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
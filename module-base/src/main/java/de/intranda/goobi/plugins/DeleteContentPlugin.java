@@ -1,15 +1,32 @@
 package de.intranda.goobi.plugins;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
-import org.apache.commons.configuration.HierarchicalConfiguration;
-import org.apache.commons.configuration.SubnodeConfiguration;
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.goobi.beans.Process;
 import org.goobi.beans.Processproperty;
@@ -21,24 +38,29 @@ import org.goobi.production.enums.PluginType;
 import org.goobi.production.enums.StepReturnValue;
 import org.goobi.production.plugin.interfaces.IStepPluginVersion2;
 
+import com.google.gson.GsonBuilder;
+
+import de.intranda.goobi.plugins.DeletionPlan.PlannedTarget;
+import de.intranda.goobi.plugins.DeletionTarget.Kind;
+
 import de.sub.goobi.config.ConfigPlugins;
 import de.sub.goobi.config.ConfigurationHelper;
+import de.sub.goobi.helper.CloseStepHelper;
 import de.sub.goobi.helper.Helper;
 import de.sub.goobi.helper.NIOFileUtils;
 import de.sub.goobi.helper.StorageProvider;
+import de.sub.goobi.helper.VariableReplacer;
 import de.sub.goobi.helper.enums.StepStatus;
 import de.sub.goobi.helper.exceptions.DAOException;
 import de.sub.goobi.helper.exceptions.SwapException;
-import de.sub.goobi.persistence.managers.ProcessManager;
 import de.sub.goobi.persistence.managers.PropertyManager;
+import de.sub.goobi.persistence.managers.StepManager;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
 import net.xeoh.plugins.base.annotations.PluginImplementation;
-import ugh.dl.DigitalDocument;
-import ugh.dl.DocStruct;
+import ugh.dl.DocStructType;
 import ugh.dl.Fileformat;
-import ugh.dl.Metadata;
 import ugh.dl.Prefs;
 import ugh.exceptions.PreferencesException;
 import ugh.exceptions.ReadException;
@@ -49,6 +71,10 @@ import ugh.exceptions.WriteException;
 public class DeleteContentPlugin implements IStepPluginVersion2 {
 
     private static final long serialVersionUID = 5692049676387064722L;
+
+    /** number of missing or differing files that are written into the process journal */
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+
     @Getter
     private Step step;
     private Process process;
@@ -99,6 +125,14 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
     @Setter
     private boolean deactivateProcess;
 
+    /** writes the status of the deactivated tasks */
+    @Setter
+    private transient StepStatusWriter stepStatusWriter = StepStatusWriter.getDefault();
+
+    /** deletes the configured process properties */
+    @Setter
+    private transient ProcessPropertyDeleter propertyDeleter = ProcessPropertyDeleter.getDefault();
+
     @Getter
     @Setter
     private boolean deleteExportDirectory;
@@ -118,7 +152,96 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
 
     private List<String> additionalImageFolder;
 
-    private SubnodeConfiguration config;
+    /** number of threads used to delete files on the local file system, 1 keeps the sequential deletion */
+    @Getter
+    @Setter
+    private int parallelism = 1;
+
+    private boolean relativeDeletion;
+
+    private ParallelDirectoryDeleter directoryDeleter;
+
+    /** move folders into the trash area and let the background reaper delete them */
+    @Getter
+    @Setter
+    private boolean useTrash;
+
+    private TrashReaper trashReaper;
+
+    private S3BatchDeleter s3Deleter;
+
+    /** limits the number of folders deleted at the same time, shared between the plugin instances of a bulk deletion */
+    @Setter
+    private Semaphore ioPermits;
+
+    /** remove the configured metadata with a streaming filter instead of loading the whole document */
+    @Getter
+    @Setter
+    private boolean streamingMetadataDeletion;
+
+    /** only estimate what would be deleted and write a deletion plan */
+    @Getter
+    @Setter
+    private boolean dryRun;
+
+    /** folder for the deletion plans of a dry run, the process folder is used if this is empty */
+    @Getter
+    @Setter
+    private String dryRunFolder;
+
+    /** names of the metadata types to remove from the meta.xml file */
+    private List<String> metadataToDelete;
+
+    /** names of the metadata types to remove by the structure elements they are removed from */
+    private Map<MetadataRemover.Scope, Set<String>> metadataScopes = Collections.emptyMap();
+
+    /** names of the process properties to delete */
+    private Set<String> propertiesToDelete;
+
+    /** rules to delete only some files of a target, by target type */
+    private Map<String, ContentFilter> contentFilters = Collections.emptyMap();
+
+    /** invalid values of the configuration, nothing is deleted if there are any */
+    private List<String> configurationErrors = Collections.emptyList();
+
+    /** folder for the archives written before the deletion, nothing is archived if this is empty */
+    @Getter
+    @Setter
+    private String archiveFolder = "";
+
+    /** types of the targets to archive, all targets if this is empty */
+    private List<String> archiveTargets = Collections.emptyList();
+
+    private FolderArchiver archiver;
+
+    /** folders with the exported copy of a target by target type, the targets are compared with them before anything is deleted */
+    private Map<String, String> exportFolders = Collections.emptyMap();
+
+    @Getter
+    @Setter
+    private String exportChecksumAlgorithm = ExportVerifier.DEFAULT_ALGORITHM;
+
+    /** only delete the selected folders, the process is not deactivated and metadata and properties are kept */
+    @Getter
+    @Setter
+    private boolean contentOnly;
+
+    /** run the deletion on a separate executor and close the task afterwards */
+    @Getter
+    @Setter
+    private boolean asynchronous;
+
+    /** progress of the current deletion, null if it was not started by {@link #run()} or the process is deleted by another run */
+    @Getter
+    private DeletionProgress progress;
+
+    /** trims the backups of the metadata files, null if all backups are kept */
+    private MetadataBackupRetention backupRetention;
+
+    public DeleteContentPlugin() {
+        // the plugin loader creates an instance when the plugins are loaded
+        PluginServices.start(title);
+    }
 
     @Override
     public void initialize(Step step, String returnPath) {
@@ -128,202 +251,197 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
         readConfiguration();
     }
 
-    private void readConfiguration( ) {
-        config = ConfigPlugins.getProjectAndStepConfig(title, step);
+    void readConfiguration() {
+        DeletionProfile profile = DeletionProfileCache.getInstance()
+                .getProfile(process.getProjekt().getTitel(), step.getTitel(), () -> ConfigPlugins.getProjectAndStepConfig(title, step));
 
-        deleteAllContentFromImageDirectory = config.getBoolean("/deleteAllContentFromImageDirectory", false);
-        deleteAllContentFromThumbsDirectory = config.getBoolean("/deleteAllContentFromThumbsDirectory", false);
-        deleteAllContentFromOcrDirectory = config.getBoolean("/deleteAllContentFromOcrDirectory", false);
-        deleteMediaDirectory = config.getBoolean("/deleteMediaDirectory", false);
-        deleteMasterDirectory = config.getBoolean("/deleteMasterDirectory", false);
-        deleteSourceDirectory = config.getBoolean("/deleteSourceDirectory", false);
-        deleteFallbackDirectory = config.getBoolean("/deleteFallbackDirectory", false);
+        deleteAllContentFromImageDirectory = profile.isDeleteAllContentFromImageDirectory();
+        deleteAllContentFromThumbsDirectory = profile.isDeleteAllContentFromThumbsDirectory();
+        deleteAllContentFromOcrDirectory = profile.isDeleteAllContentFromOcrDirectory();
+        deleteMediaDirectory = profile.isDeleteMediaDirectory();
+        deleteMasterDirectory = profile.isDeleteMasterDirectory();
+        deleteSourceDirectory = profile.isDeleteSourceDirectory();
+        deleteFallbackDirectory = profile.isDeleteFallbackDirectory();
 
-        additionalImageFolder = Arrays.asList(config.getStringArray("/additionalFolder"));
+        additionalImageFolder = profile.getAdditionalImageFolder();
 
-        deleteAltoDirectory = config.getBoolean("/deleteAltoDirectory", false);
-        deletePdfDirectory = config.getBoolean("/deletePdfDirectory", false);
-        deleteTxtDirectory = config.getBoolean("/deleteTxtDirectory", false);
-        deleteWcDirectory = config.getBoolean("/deleteWcDirectory", false);
-        deleteXmlDirectory = config.getBoolean("/deleteXmlDirectory", false);
+        deleteAltoDirectory = profile.isDeleteAltoDirectory();
+        deletePdfDirectory = profile.isDeletePdfDirectory();
+        deleteTxtDirectory = profile.isDeleteTxtDirectory();
+        deleteWcDirectory = profile.isDeleteWcDirectory();
+        deleteXmlDirectory = profile.isDeleteXmlDirectory();
 
-        deleteExportDirectory = config.getBoolean("/deleteExportDirectory", false);
-        deleteImportDirectory = config.getBoolean("/deleteImportDirectory", false);
-        deleteProcesslogDirectory = config.getBoolean("/deleteProcesslogDirectory", false);
-        deleteMetadataFiles = config.getBoolean("/deleteMetadataFiles", false);
+        deleteExportDirectory = profile.isDeleteExportDirectory();
+        deleteImportDirectory = profile.isDeleteImportDirectory();
+        deleteProcesslogDirectory = profile.isDeleteProcesslogDirectory();
+        deleteMetadataFiles = profile.isDeleteMetadataFiles();
+
+        deactivateProcess = profile.isDeactivateProcess();
+
+        deleteValidationDirectory = profile.isDeleteValidationDirectory();
+
+        parallelism = profile.getParallelism();
+        relativeDeletion = profile.isRelativeDeletion();
+        useTrash = profile.isUseTrash();
+        if (useTrash && !ConfigurationHelper.getInstance().useS3()) {
+            // start the reaper before the first deletion, so entries of an interrupted run are deleted
+            TrashReaper.getInstance();
+        }
+        streamingMetadataDeletion = profile.isStreamingMetadataDeletion();
 
-        deactivateProcess = config.getBoolean("/deactivateProcess", false);
+        dryRun = profile.isDryRun();
+        dryRunFolder = profile.getDryRunFolder();
 
-        deleteValidationDirectory = config.getBoolean("/deleteValidationDirectory", false);
+        metadataToDelete = profile.getMetadataToDelete();
+        metadataScopes = profile.getMetadataScopes();
+        propertiesToDelete = profile.getPropertiesToDelete();
+        contentFilters = profile.getContentFilters();
+        configurationErrors = profile.getConfigurationErrors();
+        archiveFolder = profile.getArchiveFolder();
+        archiveTargets = profile.getArchiveTargets();
+        exportFolders = profile.getExportFolders();
+        exportChecksumAlgorithm = profile.getExportChecksumAlgorithm();
+        asynchronous = profile.isAsynchronous();
+        MetadataBackupRetention retention = new MetadataBackupRetention(profile.getBackupRetentionCount(),
+                profile.getBackupRetentionDays() > 0 ? Duration.ofDays(profile.getBackupRetentionDays()) : null);
+        backupRetention = retention.isEnabled() ? retention : null;
     }
 
     @Override
     public boolean execute() {
-
-        try {
-            // list data in images/
-            if (deleteAllContentFromImageDirectory) {
-                String imageDirectoryName = process.getImagesDirectory();
-                List<Path> contentOfImageDirectory = StorageProvider.getInstance().listFiles(imageDirectoryName);
-                for (Path path : contentOfImageDirectory) {
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    } else {
-                        StorageProvider.getInstance().deleteFile(path);
-                    }
-                }
+        if (!configurationErrors.isEmpty()) {
+            for (String error : configurationErrors) {
+                log.error("Invalid configuration of task {} in process {}: {}", step.getTitel(), process.getId(), error);
+                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Invalid configuration of task " + step.getTitel() + ": " + error);
             }
-
-            // list data in thumbs/
-            if (deleteAllContentFromThumbsDirectory) {
-                String thumbDirectoryName = process.getThumbsDirectory();
-                Path thumbs = Paths.get(thumbDirectoryName);
-                if (StorageProvider.getInstance().isDirectory(thumbs)) {
-                    StorageProvider.getInstance().deleteDir(thumbs);
-                }
+            return false;
+        }
+        if (dryRun) {
+            return createDeletionPlan();
+        }
+        // the task and the disk pressure watcher can work on the same process, and every run appends to the same journal
+        try (DeletionJournal.ProcessLock lock = DeletionJournal.tryLock(DeletionJournal.getDefaultFolder(), process.getId())) {
+            if (lock == null && contentOnly) {
+                log.info("Another deletion of process {} is running, its content is not deleted", process.getId());
+                return false;
+            } else if (lock == null) {
+                log.warn("Another deletion of process {} is running, task {} is not executed", process.getId(), step.getTitel());
+                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR,
+                        "Task " + step.getTitel() + " cannot be executed while another deletion of this process is running");
+                return false;
             }
+            return deleteLocked();
+        } catch (IOException e) {
+            log.error(e);
+            Helper.setFehlerMeldung("Error during deletion", e);
+            Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Cannot lock the process in task " + step.getTitel() + ": " + e.getMessage());
+            return false;
+        }
+    }
 
-            // list data in ocr/
-            if (deleteAllContentFromOcrDirectory) {
-                String orcDirectoryName = process.getOcrDirectory();
-                Path ocr = Paths.get(orcDirectoryName);
-                if (StorageProvider.getInstance().isDirectory(ocr)) {
-                    StorageProvider.getInstance().deleteDir(ocr);
-                }
+    /**
+     * Delete the data of the process, the caller holds the lock of the process
+     */
+    private boolean deleteLocked() {
+        // the parallel deletion and the trash area work on the local file system only, the deleter is used for a parallelism of 1 as well to
+        // select the files of a folder
+        boolean useS3 = ConfigurationHelper.getInstance().useS3();
+        if (!useS3) {
+            directoryDeleter = new ParallelDirectoryDeleter(parallelism, relativeDeletion);
+        }
+        trashReaper = useTrash && !useS3 ? TrashReaper.getInstance() : null;
+        // on S3 whole prefixes are deleted with batched requests
+        if (useS3) {
+            s3Deleter = new S3BatchDeleter(AmazonS3DeletionClient.getInstance(), parallelism);
+        }
+        if (StringUtils.isNotBlank(archiveFolder)) {
+            if (useS3) {
+                // the archive is the only copy of the data, so nothing gets deleted without it
+                log.error("Archiving before the deletion is not supported for data in S3, process {} is not deleted", process.getId());
+                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR,
+                        "Data cannot be archived before the deletion in task " + step.getTitel() + ", archiving is not supported for data in S3");
+                s3Deleter.close();
+                s3Deleter = null;
+                return false;
             }
-            // or delete single directories
-            if (!deleteAllContentFromImageDirectory) {
-                // master
-                if (deleteMasterDirectory) {
-                    Path path = Paths.get(process.getImagesOrigDirectory(false));
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
-                }
-                // media
-                if (deleteMediaDirectory) {
-                    Path path = Paths.get(process.getImagesTifDirectory(false));
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
-                }
-                // fallback image folder
-                if (deleteFallbackDirectory) {
-                    Path path = Paths.get(process.getImagesTifDirectory(true));
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
-                }
-
-                // source
-                if (deleteSourceDirectory) {
-                    Path path = Paths.get(process.getSourceDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
+            archiver = new FolderArchiver(Paths.get(archiveFolder), parallelism);
+        }
+        // the journal records the completed targets, so an interrupted run of the same task continues with the remaining ones
+        try {
+            List<DeletionTarget> targets = getDeletionTargets();
+            String runKey = DeletionJournal.createRunKey(step.getId(), step.getBearbeitungsbeginn(), targets);
+            try (DeletionJournal journal = DeletionJournal.open(DeletionJournal.getDefaultFolder(), process.getId(), runKey)) {
+                if (journal.isResumed()) {
+                    log.info("Continue interrupted deletion of process {}, {} targets were not completed", process.getId(),
+                            journal.getRemainingCount());
                 }
-                // additional image folder
-                for (String folder : additionalImageFolder) {
-                    // get configured foldername (or null, if folder is not configured)
-                    String folderName = process.getConfiguredImageFolder(folder);
-                    // check if folder is configured
-                    if (StringUtils.isNotBlank(folderName)) {
-                        Path path = Paths.get(folderName);
-                        // check if folder exists
-                        if (StorageProvider.getInstance().isDirectory(path)) {
-                            StorageProvider.getInstance().deleteDir(path);
-                        }
-
+                if (!exportFolders.isEmpty() && !verifyExport(targets, useS3)) {
+                    if (!journal.isResumed()) {
+                        journal.finish();
                     }
+                    return false;
                 }
-            }
-
-            // delete content from the OCR sub-folders
-            if (!deleteAllContentFromOcrDirectory) {
-                if (deleteAltoDirectory) {
-                    Path path = Paths.get(process.getOcrAltoDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
+                journal.plan(targets);
+                if (progress != null && asynchronous) {
+                    estimateProgress(targets, journal, useS3);
                 }
-                if (deletePdfDirectory) {
-                    Path path = Paths.get(process.getOcrPdfDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
+                // resolve all targets against one listing of the process folder, images/ and ocr/ instead of checking each folder separately
+                ProcessFolderSnapshot snapshot = useS3 ? null
+                        : ProcessFolderSnapshot.create(Paths.get(process.getProcessDataDirectory()), Paths.get(process.getImagesDirectory()),
+                                Paths.get(process.getOcrDirectory()));
+                if (progress != null) {
+                    progress.setState(DeletionProgress.State.DELETING);
                 }
-
-                if (deleteTxtDirectory) {
-                    Path path = Paths.get(process.getOcrTxtDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
+                for (DeletionTarget target : targets) {
+                    if (journal.isCompleted(target)) {
+                        continue;
                     }
-                }
-
-                if (deleteWcDirectory) {
-                    @SuppressWarnings("removal")
-                    Path path = Paths.get(process.getOcrWcDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
+                    if (snapshot == null || snapshot.exists(target.getPath())) {
+                        deleteTarget(target, snapshot);
                     }
+                    journal.completed(target);
                 }
-
-                if (deleteXmlDirectory) {
-                    Path path = Paths.get(process.getOcrXmlDirectory());
-                    if (StorageProvider.getInstance().isDirectory(path)) {
-                        StorageProvider.getInstance().deleteDir(path);
-                    }
-                }
-            }
-            if (deleteExportDirectory) {
-                Path path = Paths.get(process.getExportDirectory());
-                if (StorageProvider.getInstance().isDirectory(path)) {
-                    StorageProvider.getInstance().deleteDir(path);
-                }
-            }
-            if (deleteImportDirectory) {
-                Path path = Paths.get(process.getImportDirectory());
-                if (StorageProvider.getInstance().isDirectory(path)) {
-                    StorageProvider.getInstance().deleteDir(path);
-                }
-            }
-
-            if (deleteMetadataFiles) {
-                List<Path> filesInFolder = StorageProvider.getInstance().listFiles(process.getProcessDataDirectory(), NIOFileUtils.fileFilter);
-                for (Path path : filesInFolder) {
-                    StorageProvider.getInstance().deleteFile(path);
-                }
-            }
-            if (deleteProcesslogDirectory) {
-                Path path = Paths.get(process.getProcessDataDirectory(), ConfigurationHelper.getInstance().getFolderForInternalJournalFiles());
-                if (StorageProvider.getInstance().isDirectory(path)) {
-                    StorageProvider.getInstance().deleteDir(path);
-                }
-            }
-
-            if (deleteValidationDirectory) {
-                Path path = Paths.get(process.getProcessDataDirectory(), "validation");
-                if (StorageProvider.getInstance().isDirectory(path)) {
-                    StorageProvider.getInstance().deleteDir(path);
-                }
+                journal.finish();
             }
-
         } catch (IOException | SwapException | DAOException e) {
             log.error(e);
             Helper.setFehlerMeldung("Error during deletion", e);
             Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error during file deletion in task " + step.getTitel() + ": " + e.getMessage());
             return false;
+        } finally {
+            if (directoryDeleter != null) {
+                directoryDeleter.close();
+                directoryDeleter = null;
+            }
+            if (s3Deleter != null) {
+                s3Deleter.close();
+                s3Deleter = null;
+            }
+            if (archiver != null) {
+                archiver.close();
+                archiver = null;
+            }
+        }
+
+        if (contentOnly) {
+            Helper.addMessageToProcessJournal(process.getId(), LogType.INFO, "Content was deleted outside of the workflow, task " + step.getTitel()
+                    + " is executed as usual");
+            return true;
         }
 
         if (deactivateProcess) {
+            List<Integer> deactivatedSteps = new ArrayList<>();
             for (Step other : process.getSchritte()) {
-                if (!other.getTitel().equals(step.getTitel()) && other.getBearbeitungsstatusEnum() != StepStatus.DONE) {
+                if (!other.getTitel().equals(step.getTitel()) && other.getBearbeitungsstatusEnum() != StepStatus.DONE
+                        && other.getBearbeitungsstatusEnum() != StepStatus.DEACTIVATED) {
                     other.setBearbeitungsstatusEnum(StepStatus.DEACTIVATED);
+                    deactivatedSteps.add(other.getId());
                 }
             }
             try {
-                ProcessManager.saveProcess(process);
-            } catch (DAOException e) {
+                // only the status of the changed tasks is written instead of saving the whole process
+                stepStatusWriter.updateStatus(deactivatedSteps, StepStatus.DEACTIVATED.getValue());
+            } catch (SQLException e) {
                 log.error("Error process deactivation", e);
                 Helper.setFehlerMeldung("Error process deactivation", e);
                 Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error process deactivation: " +  e.getMessage());
@@ -332,40 +450,45 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
         }
 
         // delete metadata from meta.xml
-        List<HierarchicalConfiguration> mdlist = config.configurationsAt("//deleteMetadata");
-        if (mdlist != null && !mdlist.isEmpty()) {
+        if (!metadataToDelete.isEmpty()) {
             try {
-                // open the mets file
-                Prefs prefs = step.getProzess().getRegelsatz().getPreferences();
-                Fileformat fileformat = step.getProzess().readMetadataFile();
-                DigitalDocument digitalDocument;
-                digitalDocument = fileformat.getDigitalDocument();
-                DocStruct doc = digitalDocument.getLogicalDocStruct();
-                // in case it is an anchor file use the first child as logical top
-                if (doc.getType().isAnchor()) {
-                    doc = doc.getAllChildren().get(0);
-                }
-                List<Metadata> mdToDelete = new ArrayList<>();
-
-                // iterate through all fields to delete to find the matching ones
-                for (HierarchicalConfiguration field : mdlist) {
-                    String label = field.getString("@name");
-                    for (Metadata m : doc.getAllMetadataByType(prefs.getMetadataTypeByName(label))) {
-                        mdToDelete.add(m);
+                // the parsed ruleset is shared with other tasks that use the same ruleset
+                PrefsCache.CachedPrefs ruleset = PrefsCache.getInstance()
+                        .get(Paths.get(ConfigurationHelper.getInstance().getRulesetFolder(), process.getRegelsatz().getDatei()));
+                Prefs prefs = ruleset.getPrefs();
+                // types that are not part of the ruleset cannot occur in the document
+                Map<MetadataRemover.Scope, Set<String>> names = new EnumMap<>(MetadataRemover.Scope.class);
+                for (Map.Entry<MetadataRemover.Scope, Set<String>> scope : metadataScopes.entrySet()) {
+                    Set<String> known = new HashSet<>();
+                    for (String name : scope.getValue()) {
+                        if (ruleset.getMetadataType(name) != null) {
+                            known.add(name);
+                        }
                     }
+                    names.put(scope.getKey(), known);
                 }
-
-                // delete all metadata that matched
-                for (Metadata m : mdToDelete) {
-                    doc.removeMetadata(m);
-                }
-
-                // save the mets file again if there was something to delete
-                if (!mdToDelete.isEmpty()) {
-                    process.writeMetadataFile(fileformat);
+                MetadataRemover remover = new MetadataRemover(names);
+                if (streamingMetadataDeletion && !useS3 && remover.isTopOnly()) {
+                    // filter the mets file without loading the document
+                    Set<String> topNames = names.getOrDefault(MetadataRemover.Scope.TOP, Collections.emptySet());
+                    Path metadataFile = Paths.get(process.getMetadataFilePath());
+                    // the backups are rotated like Goobi workflow does when it saves the file
+                    MetsMetadataFilter filter = new MetsMetadataFilter(ConfigurationHelper.getInstance().getNumberOfMetaBackups());
+                    filter.removeMetadata(metadataFile, topNames, type -> {
+                        DocStructType docStructType = prefs.getDocStrctTypeByName(type);
+                        return docStructType != null && docStructType.isAnchor();
+                    });
+                } else {
+                    // open the mets file with the cached ruleset, all scopes are handled within one traversal of the document. Goobi workflow
+                    // reads and writes the file, so the backups are rotated and the file is written safely, locally as well as in S3
+                    Fileformat fileformat = process.readMetadataFile(process.getMetadataFilePath(), prefs);
+                    // save the mets file again if there was something to delete
+                    if (remover.removeMetadata(fileformat.getDigitalDocument()) > 0) {
+                        process.writeMetadataFile(fileformat);
+                    }
                 }
 
-            } catch (PreferencesException | ReadException | WriteException | IOException | SwapException e) {
+            } catch (PreferencesException | ReadException | WriteException | IOException | SwapException | XMLStreamException e) {
                 log.error("Error while deleting metadata from meta.xml file", e);
                 Helper.setFehlerMeldung("Error while deleting metadata from meta.xml file", e);
                 Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error while deleting metadata from meta.xml file: " +  e.getMessage());
@@ -374,30 +497,420 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
         }
 
         // delete properties from process
-        List<HierarchicalConfiguration> proplist = config.configurationsAt("//deleteProperty");
-        if (proplist != null && !proplist.isEmpty()) {
-            List<Processproperty> propToDelete = new ArrayList<>();
-
-            // iterate through all fields to delete to find the matching ones
-            for (HierarchicalConfiguration field : proplist) {
-                String label = field.getString("@name");
-                List<Processproperty> plist = PropertyManager.getProcessPropertiesForProcess(step.getProcessId());
-                for (Processproperty pp : plist) {
-                    if (pp.getTitel().equals(label)) {
-                        propToDelete.add(pp);
-                    }
+        if (!propertiesToDelete.isEmpty()) {
+            try {
+                deleteProperties(step.getProcessId(), propertiesToDelete, propertyDeleter);
+            } catch (SQLException e) {
+                log.error("Error while deleting properties", e);
+                Helper.setFehlerMeldung("Error while deleting properties", e);
+                Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error while deleting properties: " + e.getMessage());
+                return false;
+            }
+        }
+        Helper.addMessageToProcessJournal(process.getId(), LogType.INFO, "Data was automatically deleted in task " + step.getTitel());
+        return true;
+    }
+
+    /**
+     * Estimate the files and bytes of all selected folders without deleting anything. The plan is written as JSON file and a summary is added to
+     * the process journal.
+     * 
+     * @return true if the plan was created
+     */
+    private boolean createDeletionPlan() {
+        DeletionPlan plan = new DeletionPlan();
+        plan.setProcessId(process.getId());
+        plan.setProcessTitle(process.getTitel());
+        plan.setStepTitle(step.getTitel());
+        plan.setCreated(LocalDateTime.now().toString());
+
+        S3DeletionClient s3Client = ConfigurationHelper.getInstance().useS3() ? AmazonS3DeletionClient.getInstance() : null;
+        // use the configured number of threads, many dry runs can be started at the same time
+        try (DeletionPlanner planner = new DeletionPlanner(parallelism, s3Client)) {
+            planner.setBackupRetention(backupRetention);
+            planner.estimate(plan, getDeletionTargets());
+
+            Path folder = StringUtils.isBlank(dryRunFolder) ? Paths.get(process.getProcessDataDirectory()) : Paths.get(dryRunFolder);
+            Files.createDirectories(folder);
+            Path planFile = folder.resolve(process.getId() + "_deletion_plan.json");
+            Files.write(planFile, new GsonBuilder().setPrettyPrinting().create().toJson(plan).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | SwapException | DAOException e) {
+            log.error("Error while creating the deletion plan", e);
+            Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error while creating the deletion plan in task " + step.getTitel() + ": " + e.getMessage());
+            return false;
+        }
+
+        StringBuilder message = new StringBuilder("Dry run in task ").append(step.getTitel())
+                .append(": ")
+                .append(plan.getTotalFiles())
+                .append(" files with ")
+                .append(FileUtils.byteCountToDisplaySize(plan.getTotalBytes()))
+                .append(" would be deleted");
+        for (PlannedTarget target : plan.getTargets()) {
+            if (target.isExists()) {
+                message.append("<br/>")
+                        .append(target.getType())
+                        .append(": ")
+                        .append(target.getFiles())
+                        .append(" files, ")
+                        .append(FileUtils.byteCountToDisplaySize(target.getBytes()));
+            }
+        }
+        Helper.addMessageToProcessJournal(process.getId(), LogType.INFO, message.toString());
+        return true;
+    }
+
+    /**
+     * Collect all folders and files that are selected by the configuration, in the order they get deleted
+     * 
+     * @return the deletion targets, not checked for existence
+     * @throws IOException
+     * @throws SwapException
+     * @throws DAOException
+     */
+    public List<DeletionTarget> getDeletionTargets() throws IOException, SwapException, DAOException {
+        List<DeletionTarget> targets = new ArrayList<>();
+        // data in images/
+        if (deleteAllContentFromImageDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.IMAGES, Paths.get(process.getImagesDirectory()), Kind.CONTENT));
+        }
+
+        // data in thumbs/
+        if (deleteAllContentFromThumbsDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.THUMBS, Paths.get(process.getThumbsDirectory()), Kind.DIRECTORY));
+        }
+
+        // data in ocr/
+        if (deleteAllContentFromOcrDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.OCR, Paths.get(process.getOcrDirectory()), Kind.DIRECTORY));
+        }
+        // or single directories
+        if (!deleteAllContentFromImageDirectory) {
+            // master
+            if (deleteMasterDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.MASTER, Paths.get(process.getImagesOrigDirectory(false)), Kind.DIRECTORY));
+            }
+            // media
+            if (deleteMediaDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.MEDIA, Paths.get(process.getImagesTifDirectory(false)), Kind.DIRECTORY));
+            }
+            // fallback image folder
+            if (deleteFallbackDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.FALLBACK, Paths.get(process.getImagesTifDirectory(true)), Kind.DIRECTORY));
+            }
+
+            // source
+            if (deleteSourceDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.SOURCE, Paths.get(process.getSourceDirectory()), Kind.DIRECTORY));
+            }
+            // additional image folder
+            for (String folder : additionalImageFolder) {
+                // get configured foldername (or null, if folder is not configured)
+                String folderName = process.getConfiguredImageFolder(folder);
+                // check if folder is configured
+                if (StringUtils.isNotBlank(folderName)) {
+                    targets.add(new DeletionTarget(DeletionTarget.ADDITIONAL_PREFIX + folder, Paths.get(folderName), Kind.DIRECTORY));
                 }
             }
+        }
+
+        // the OCR sub-folders
+        if (!deleteAllContentFromOcrDirectory) {
+            if (deleteAltoDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.ALTO, Paths.get(process.getOcrAltoDirectory()), Kind.DIRECTORY));
+            }
+            if (deletePdfDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.PDF, Paths.get(process.getOcrPdfDirectory()), Kind.DIRECTORY));
+            }
+
+            if (deleteTxtDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.TXT, Paths.get(process.getOcrTxtDirectory()), Kind.DIRECTORY));
+            }
+
+            if (deleteWcDirectory) {
+                @SuppressWarnings("removal")
+                Path path = Paths.get(process.getOcrWcDirectory());
+                targets.add(new DeletionTarget(DeletionTarget.WC, path, Kind.DIRECTORY));
+            }
 
-            // now delete the properties that were found
-            for (Processproperty pd : propToDelete) {
-                PropertyManager.deleteProcessProperty(pd);
+            if (deleteXmlDirectory) {
+                targets.add(new DeletionTarget(DeletionTarget.XML, Paths.get(process.getOcrXmlDirectory()), Kind.DIRECTORY));
             }
         }
-        Helper.addMessageToProcessJournal(process.getId(), LogType.INFO, "Data was automatically deleted in task " + step.getTitel());
+        if (deleteExportDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.EXPORT, Paths.get(process.getExportDirectory()), Kind.DIRECTORY));
+        }
+        if (deleteImportDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.IMPORT, Paths.get(process.getImportDirectory()), Kind.DIRECTORY));
+        }
+
+        if (deleteMetadataFiles) {
+            targets.add(new DeletionTarget(DeletionTarget.METADATA_FILES, Paths.get(process.getProcessDataDirectory()), Kind.FILES));
+        } else if (backupRetention != null) {
+            targets.add(new DeletionTarget(DeletionTarget.METADATA_BACKUPS, Paths.get(process.getProcessDataDirectory()), Kind.BACKUPS));
+        }
+        if (deleteProcesslogDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.PROCESSLOG,
+                    Paths.get(process.getProcessDataDirectory(), ConfigurationHelper.getInstance().getFolderForInternalJournalFiles()), Kind.DIRECTORY));
+        }
+
+        if (deleteValidationDirectory) {
+            targets.add(new DeletionTarget(DeletionTarget.VALIDATION, Paths.get(process.getProcessDataDirectory(), "validation"), Kind.DIRECTORY));
+        }
+
+        // targets with rules delete only the selected files
+        for (int i = 0; i < targets.size(); i++) {
+            ContentFilter filter = contentFilters.get(targets.get(i).getType());
+            if (filter != null) {
+                targets.set(i, targets.get(i).withContentFilter(filter));
+            }
+        }
+        return targets;
+    }
+
+    private void deleteTarget(DeletionTarget target, ProcessFolderSnapshot snapshot) throws IOException {
+        if (ioPermits != null) {
+            try {
+                ioPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to delete " + target);
+            }
+        }
+        long start = System.currentTimeMillis();
+        DeletionCounter counter = new DeletionCounter();
+        boolean success = false;
+        if (progress != null) {
+            progress.startTarget(target, counter);
+        }
+        try {
+            if (archiver != null) {
+                archiveTarget(target);
+            }
+            if (target.getContentFilter() != null) {
+                deleteSelectedFiles(target, counter);
+                success = true;
+                return;
+            }
+            switch (target.getKind()) {
+                case CONTENT:
+                    if (s3Deleter != null) {
+                        // there are no real folders in S3, delete everything below the folder at once
+                        deleteDirectory(target.getPath(), counter);
+                    } else {
+                        // sub folders are deleted one by one, so they can be moved into the trash area
+                        try (DirectoryStream<Path> folders = Files.newDirectoryStream(target.getPath(),
+                                entry -> Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))) {
+                            for (Path folder : folders) {
+                                deleteDirectory(folder, counter);
+                            }
+                        } catch (NoSuchFileException e) {
+                            // nothing to delete
+                        }
+                        directoryDeleter.deleteFiles(target.getPath(), entry -> true, counter);
+                    }
+                    break;
+                case FILES:
+                    if (s3Deleter != null) {
+                        for (Path path : StorageProvider.getInstance().listFiles(target.getPath().toString(), NIOFileUtils.fileFilter)) {
+                            deleteFile(path, counter);
+                        }
+                    } else {
+                        directoryDeleter.deleteFiles(target.getPath(), NIOFileUtils.fileFilter, counter);
+                    }
+                    break;
+                case BACKUPS:
+                    if (s3Deleter != null) {
+                        log.warn("The retention of metadata backups is not supported for data in S3, all backups of process {} are kept",
+                                process.getId());
+                    } else {
+                        backupRetention.deleteExpiredBackups(target.getPath(), counter);
+                    }
+                    break;
+                default:
+                    // the snapshot knows which of the existing targets are folders, on S3 there is nothing to check
+                    if (snapshot == null || snapshot.isDirectory(target.getPath())) {
+                        deleteDirectory(target.getPath(), counter);
+                    }
+            }
+            success = true;
+        } finally {
+            DeletionMetrics.getInstance().record(target.getType(), System.currentTimeMillis() - start, counter, success);
+            if (success && s3Deleter == null) {
+                updateSizeIndex(target);
+            }
+            if (progress != null) {
+                progress.finishTarget();
+            }
+            if (ioPermits != null) {
+                ioPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Compare the targets with their exported copies. Nothing is deleted, if a file is missing or differs.
+     */
+    private boolean verifyExport(List<DeletionTarget> targets, boolean useS3) throws IOException {
+        if (useS3) {
+            log.error("The export cannot be verified for data in S3, process {} is not deleted", process.getId());
+            Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR,
+                    "Data was not deleted in task " + step.getTitel() + ", the export cannot be verified for data in S3");
+            return false;
+        }
+        VariableReplacer replacer = new VariableReplacer(null, null, process, step);
+        try (ExportVerifier verifier = new ExportVerifier(exportChecksumAlgorithm, parallelism)) {
+            for (DeletionTarget target : targets) {
+                String exportFolder = exportFolders.get(target.getType());
+                if (exportFolder == null) {
+                    continue;
+                }
+                ContentFilter filter = target.getContentFilter();
+                List<String> mismatches = verifier.verify(target.getPath(), Paths.get(replacer.replace(exportFolder)),
+                        filter == null ? path -> true : filter::matches);
+                if (!mismatches.isEmpty()) {
+                    log.error("Export of {} of process {} is incomplete: {}", target.getType(), process.getId(), mismatches);
+                    Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Data was not deleted in task " + step.getTitel()
+                            + ", the export of " + target.getType() + " is incomplete: "
+                            + String.join(", ", mismatches.subList(0, Math.min(mismatches.size(), MAX_REPORTED_MISMATCHES))));
+                    return false;
+                }
+            }
+            log.debug("Verified export of process {}, {} bytes were hashed", process.getId(), verifier.getHashedBytes().sum());
+        } catch (IllegalArgumentException e) {
+            log.error(e);
+            Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Data was not deleted in task " + step.getTitel() + ": " + e.getMessage());
+            return false;
+        }
         return true;
     }
 
+    /**
+     * Write the files of a target into its archive. An exception prevents the deletion of the target.
+     */
+    private void archiveTarget(DeletionTarget target) throws IOException {
+        if (target.getKind() == Kind.BACKUPS || !archiveTargets.isEmpty() && !archiveTargets.contains(target.getType())) {
+            return;
+        }
+        ContentFilter filter = target.getContentFilter();
+        Path archiveFile = archiver.getArchiveFile(process.getId(), target.getType());
+        int files = archiver.archive(target.getPath(), target.getKind() != Kind.FILES, filter == null ? path -> true : filter::matches, archiveFile);
+        if (files > 0) {
+            Helper.addMessageToProcessJournal(process.getId(), LogType.INFO, "Archived " + files + " files of " + target.getType() + " into " + archiveFile);
+        }
+    }
+
+    /**
+     * Measure the folders of a deleted target again, so the size index does not offer them as candidates anymore
+     */
+    private void updateSizeIndex(DeletionTarget target) {
+        ProcessSizeIndex index = ProcessSizeIndex.getRunningInstance();
+        if (index == null) {
+            return;
+        }
+        try {
+            index.refreshFolder(process.getId(), target.getPath());
+        } catch (IOException e) {
+            log.warn("Cannot update the size index for {} of process {}", target.getType(), process.getId(), e);
+        }
+    }
+
+    /**
+     * Estimate the files and bytes of the remaining targets for the progress
+     */
+    private void estimateProgress(List<DeletionTarget> targets, DeletionJournal journal, boolean useS3) throws IOException {
+        progress.setState(DeletionProgress.State.PLANNING);
+        List<DeletionTarget> remaining = new ArrayList<>();
+        for (DeletionTarget target : targets) {
+            if (!journal.isCompleted(target)) {
+                remaining.add(target);
+            }
+        }
+        DeletionPlan plan = new DeletionPlan();
+        try (DeletionPlanner planner = new DeletionPlanner(parallelism, useS3 ? AmazonS3DeletionClient.getInstance() : null)) {
+            planner.setBackupRetention(backupRetention);
+            planner.estimate(plan, remaining);
+        }
+        progress.setPlanned(plan.getTotalFiles(), plan.getTotalBytes());
+    }
+
+    /**
+     * Delete the files of a target that are selected by its rules in a single pass. Folders that are empty afterwards are removed. Targets of
+     * the kind FILES are not searched recursively.
+     * 
+     * @param target the target with rules
+     * @param counter counts the removed files
+     * @throws IOException
+     */
+    private void deleteSelectedFiles(DeletionTarget target, DeletionCounter counter) throws IOException {
+        ContentFilter filter = target.getContentFilter();
+        boolean recursive = target.getKind() != Kind.FILES;
+        if (s3Deleter != null) {
+            String prefix = AmazonS3DeletionClient.getPrefix(target.getPath());
+            // there are no empty folders in S3, only the keys are filtered
+            s3Deleter.deletePrefix(prefix, key -> {
+                String relativeKey = key.substring(prefix.length());
+                return !relativeKey.isEmpty() && (recursive || !relativeKey.contains("/")) && filter.matches(Paths.get(relativeKey));
+            }, counter);
+        } else if (recursive) {
+            directoryDeleter.deleteMatching(target.getPath(), filter, counter);
+        } else {
+            directoryDeleter.deleteFiles(target.getPath(), entry -> NIOFileUtils.fileFilter.accept(entry) && filter.matches(entry.getFileName()),
+                    counter);
+        }
+    }
+
+    private static void deleteFile(Path path, DeletionCounter counter) throws IOException {
+        long size = StorageProvider.getInstance().getFileSize(path);
+        DeletionRateLimiter.getInstance().acquireDeletes(1);
+        StorageProvider.getInstance().deleteFile(path);
+        counter.addFile(size);
+    }
+
+    /**
+     * Delete all properties of a process with one of the given names. The properties are loaded only once, independent of the number of names,
+     * and deleted with a single statement.
+     * 
+     * @param processId id of the process
+     * @param labels names of the properties to delete
+     * @param deleter deletes the properties in the database
+     * @return number of deleted properties
+     * @throws SQLException
+     */
+    static int deleteProperties(Integer processId, Set<String> labels, ProcessPropertyDeleter deleter) throws SQLException {
+        List<Integer> propToDelete = new ArrayList<>();
+        for (Processproperty pp : PropertyManager.getProcessPropertiesForProcess(processId)) {
+            if (labels.contains(pp.getTitel())) {
+                propToDelete.add(pp.getId());
+            }
+        }
+
+        // now delete the properties that were found
+        deleter.deleteProperties(propToDelete);
+        return propToDelete.size();
+    }
+
+    /**
+     * Delete a directory and its content, the caller checked that it is a directory. On S3 all objects below the directory are deleted in
+     * batches. If the trash area is used, the directory is only moved there. Otherwise the directory deleter removes it and counts every file
+     * and byte for the metrics
+     * 
+     * @param path directory to delete
+     * @param counter counts the removed files, folders moved into the trash area are counted by the background deletion
+     * @throws IOException
+     */
+    private void deleteDirectory(Path path, DeletionCounter counter) throws IOException {
+        if (s3Deleter != null) {
+            // listing the prefix is as expensive as checking for its existence
+            s3Deleter.deletePrefix(AmazonS3DeletionClient.getPrefix(path), counter);
+            return;
+        }
+        if (trashReaper != null && trashReaper.moveToTrash(path, String.valueOf(process.getId()))) {
+            return;
+        }
+        directoryDeleter.deleteDir(path, counter);
+    }
+
     @Override
     public String cancel() {
         return null;
@@ -430,7 +943,103 @@ public class DeleteContentPlugin implements IStepPluginVersion2 {
 
     @Override
     public PluginReturnValue run() {
-        return execute()  ? PluginReturnValue.FINISH : PluginReturnValue.ERROR;
+        DeletionProgressRegistry registry = DeletionProgressRegistry.getInstance();
+        // null, if another deletion of the process is running, its progress is kept and this one fails at the lock
+        progress = registry.register(process.getId(), step.getTitel());
+        if (asynchronous && !dryRun) {
+            // the task stays in work until the deletion is finished
+            registry.submit(this::executeAsynchronously);
+            return PluginReturnValue.WAIT;
+        }
+        try {
+            boolean success = execute();
+            if (progress != null) {
+                progress.setState(success ? DeletionProgress.State.FINISHED : DeletionProgress.State.FAILED);
+            }
+            return success ? PluginReturnValue.FINISH : PluginReturnValue.ERROR;
+        } finally {
+            if (progress != null) {
+                registry.unregister(progress);
+            }
+        }
+    }
+
+    /**
+     * Run the deletion and close the task afterwards, or set it to error if the deletion failed
+     */
+    private void executeAsynchronously() {
+        boolean success = false;
+        String error = null;
+        try {
+            success = execute();
+        } catch (RuntimeException e) {
+            log.error("Error during the asynchronous deletion of process {}", process.getId(), e);
+            error = e.getMessage();
+        } finally {
+            if (progress != null) {
+                progress.setState(success ? DeletionProgress.State.FINISHED : DeletionProgress.State.FAILED);
+                DeletionProgressRegistry.getInstance().unregister(progress);
+            }
+        }
+        if (success) {
+            closeTask();
+        } else {
+            failTask(error);
+        }
+    }
+
+    /**
+     * Close the task after the asynchronous deletion was finished
+     */
+    void closeTask() {
+        CloseStepHelper.closeStep(step, null);
+    }
+
+    /**
+     * Set the task to error after the asynchronous deletion failed
+     * 
+     * @param error message of an unexpected error, null if the reason was already written into the process journal
+     */
+    void failTask(String error) {
+        if (error != null) {
+            Helper.addMessageToProcessJournal(process.getId(), LogType.ERROR, "Error during file deletion in task " + step.getTitel() + ": " + error);
+        }
+        step.setBearbeitungsstatusEnum(StepStatus.ERROR);
+        try {
+            StepManager.saveStep(step);
+        } catch (DAOException e) {
+            log.error("Cannot set task {} of process {} to error", step.getTitel(), process.getId(), e);
+        }
+    }
+
+    /**
+     * Continue the asynchronous deletions that were interrupted by a restart of the server. Their tasks are still in work, but nothing runs for
+     * them anymore. Only tasks that were started before the JVM are used, so a task that is started at the same time is not executed twice. The
+     * journal of each deletion skips the folders that were already deleted.
+     * 
+     * @param pluginTitle title of the plugin
+     */
+    static void resumeAsynchronousDeletions(String pluginTitle) {
+        Date jvmStart = new Date(ManagementFactory.getRuntimeMXBean().getStartTime());
+        try {
+            List<Step> steps = StepManager.getSteps("SchritteID",
+                    "schritte.stepPlugin = '" + pluginTitle + "' AND schritte.Bearbeitungsstatus = " + StepStatus.INWORK.getValue());
+            for (Step inWork : steps) {
+                if (inWork.getBearbeitungsbeginn() == null || !inWork.getBearbeitungsbeginn().before(jvmStart)) {
+                    continue;
+                }
+                DeleteContentPlugin plugin = new DeleteContentPlugin();
+                plugin.initialize(inWork, "");
+                if (plugin.isAsynchronous() && !plugin.isDryRun()) {
+                    log.info("Continue the asynchronous deletion of process {} after a restart", inWork.getProcessId());
+                    Helper.addMessageToProcessJournal(inWork.getProcessId(), LogType.INFO,
+                            "The deletion in task " + inWork.getTitel() + " is continued after a restart");
+                    plugin.run();
+                }
+            }
+        } catch (DAOException | RuntimeException e) {
+            log.error("Cannot continue the asynchronous deletions of plugin {}", pluginTitle, e);
+        }
     }
 
     @Override
@@ -0,0 +1,30 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the files and bytes removed while deleting a single target. The counter can be updated by several threads.
+ */
+public class DeletionCounter {
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    public void addFile(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    public void add(long numberOfFiles, long size) {
+        files.add(numberOfFiles);
+        bytes.add(size);
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+}
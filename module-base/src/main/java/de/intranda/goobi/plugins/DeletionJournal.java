@@ -0,0 +1,288 @@
+package de.intranda.goobi.plugins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.Getter;
+
+/**
+ * Append-only journal of the deletion of a single process. It contains the planned targets and every completed target, one line per entry. If
+ * the deletion is interrupted, e.g. by a restart of the server, the next run skips the completed targets and continues with the remaining ones.
+ * The journal is removed when all targets are completed. The first line identifies the run, a journal written by another run, e.g. by an earlier
+ * execution of the task or with a different configuration, is discarded.
+ *
+ * The entries are synchronized to disk in batches: after {@link #SYNC_EVERY_RECORDS} entries or if the last synchronization is older than
+ * {@link #SYNC_INTERVAL_MILLIS}. Entries lost in a crash only lead to a target being deleted again, which is harmless.
+ *
+ * Only one run may work on a process at a time, see {@link #tryLock(Path, int)}.
+ */
+public class DeletionJournal implements Closeable {
+
+    public static final String JOURNAL_FOLDER_NAME = ".deletion-journal";
+
+    static final int SYNC_EVERY_RECORDS = 32;
+
+    static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private static final String RUN = "RUN";
+
+    private static final String PLANNED = "PLAN";
+
+    private static final String COMPLETED = "DONE";
+
+    private static final char SEPARATOR = '\t';
+
+    @Getter
+    private final Path journalFile;
+
+    /** true, if the journal of an interrupted run was found */
+    @Getter
+    private final boolean resumed;
+
+    private final Set<String> plannedTargets = new HashSet<>();
+
+    private final Set<String> completedTargets = new HashSet<>();
+
+    private FileChannel channel;
+
+    private int unsyncedRecords;
+
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * Get the folder of the journals within the metadata folder
+     * 
+     * @return the journal folder
+     */
+    public static Path getDefaultFolder() {
+        return Paths.get(ConfigurationHelper.getInstance().getMetadataFolder(), JOURNAL_FOLDER_NAME);
+    }
+
+    /**
+     * Create the key of a run. It stays the same while a task is in work, also across restarts, and changes if the task is executed again or the
+     * targets are different.
+     * 
+     * @param stepId id of the task
+     * @param started start of the task, null if it was not started within the workflow
+     * @param targets all targets of the run
+     * @return the key
+     */
+    public static String createRunKey(Integer stepId, Date started, List<DeletionTarget> targets) {
+        List<String> keys = new ArrayList<>();
+        for (DeletionTarget target : targets) {
+            keys.add(getKey(target));
+        }
+        return stepId + "-" + (started == null ? 0 : started.getTime()) + "-" + Integer.toHexString(keys.hashCode());
+    }
+
+    /**
+     * Lock a process for a run. The lock is an exclusive lock on a file in the journal folder, so it is held against runs in this JVM, e.g. the
+     * task and the disk pressure watcher, as well as against other servers that share the metadata folder. The lock file is kept after the run,
+     * removing it would allow two runs to lock different files.
+     * 
+     * @param folder the journal folder
+     * @param processId id of the process
+     * @return the lock, null if another run holds it
+     * @throws IOException
+     */
+    public static ProcessLock tryLock(Path folder, int processId) throws IOException {
+        Files.createDirectories(folder);
+        FileChannel lockChannel = FileChannel.open(folder.resolve(processId + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another thread of this JVM
+        } finally {
+            if (lock == null) {
+                lockChannel.close();
+            }
+        }
+        return lock == null ? null : new ProcessLock(lockChannel);
+    }
+
+    /**
+     * Open the journal of a process. An existing journal of the same run is read and continued, the journal of any other run is discarded. The caller has to hold the
+     * lock of the process.
+     * 
+     * @param folder the journal folder
+     * @param processId id of the process
+     * @param runKey key of the current run, see {@link #createRunKey(Integer, Date, List)}
+     * @return the journal
+     * @throws IOException
+     */
+    public static DeletionJournal open(Path folder, int processId, String runKey) throws IOException {
+        Files.createDirectories(folder);
+        return new DeletionJournal(folder.resolve(processId + ".log"), runKey);
+    }
+
+    private DeletionJournal(Path journalFile, String runKey) throws IOException {
+        this.journalFile = journalFile;
+        byte[] content = Files.exists(journalFile) ? Files.readAllBytes(journalFile) : new byte[0];
+        boolean sameRun = false;
+        if (content.length > 0) {
+            String[] lines = new String(content, StandardCharsets.UTF_8).split("\n");
+            sameRun = lines.length > 1 && lines[0].equals(RUN + SEPARATOR + runKey);
+            for (int i = 1; sameRun && i < lines.length; i++) {
+                // the last line can be incomplete after a crash
+                String line = lines[i];
+                int index = line.indexOf(SEPARATOR);
+                if (index == -1) {
+                    continue;
+                }
+                String state = line.substring(0, index);
+                String key = line.substring(index + 1);
+                if (PLANNED.equals(state)) {
+                    plannedTargets.add(key);
+                } else if (COMPLETED.equals(state)) {
+                    completedTargets.add(key);
+                }
+            }
+        }
+        resumed = !plannedTargets.isEmpty();
+        if (sameRun) {
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (content[content.length - 1] != '\n') {
+                // finish the incomplete line of the interrupted run
+                write("\n");
+            }
+        } else {
+            // nothing or another run was recorded, start a new journal
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            write(RUN + SEPARATOR + runKey + "\n");
+        }
+    }
+
+    /**
+     * Record the targets of this run. Targets that are already part of the journal are not written again.
+     * 
+     * @param targets all targets of the run
+     * @throws IOException
+     */
+    public void plan(List<DeletionTarget> targets) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (DeletionTarget target : targets) {
+            String key = getKey(target);
+            if (plannedTargets.add(key)) {
+                lines.add(PLANNED + SEPARATOR + key);
+            }
+        }
+        if (!lines.isEmpty()) {
+            write(String.join("\n", lines) + "\n");
+            // the plan is always written to disk, before anything gets deleted
+            sync();
+        }
+    }
+
+    /**
+     * @param target the target
+     * @return true, if the target was completed in an earlier run
+     */
+    public boolean isCompleted(DeletionTarget target) {
+        return completedTargets.contains(getKey(target));
+    }
+
+    /**
+     * Record a completed target
+     * 
+     * @param target the target
+     * @throws IOException
+     */
+    public void completed(DeletionTarget target) throws IOException {
+        String key = getKey(target);
+        if (completedTargets.add(key)) {
+            write(COMPLETED + SEPARATOR + key + "\n");
+            unsyncedRecords++;
+            if (unsyncedRecords >= SYNC_EVERY_RECORDS || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * @return number of planned targets that are not completed yet
+     */
+    public int getRemainingCount() {
+        int remaining = 0;
+        for (String key : plannedTargets) {
+            if (!completedTargets.contains(key)) {
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Close the journal and remove it, all targets are completed
+     * 
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        close();
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            try {
+                if (unsyncedRecords > 0) {
+                    sync();
+                }
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private void write(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsyncedRecords = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Exclusive lock of a process, released on close
+     */
+    public static final class ProcessLock implements Closeable {
+
+        private final FileChannel lockChannel;
+
+        private ProcessLock(FileChannel lockChannel) {
+            this.lockChannel = lockChannel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // closing the channel releases the lock
+            lockChannel.close();
+        }
+    }
+
+    private static String getKey(DeletionTarget target) {
+        return target.getType() + SEPARATOR + target.getPath();
+    }
+}
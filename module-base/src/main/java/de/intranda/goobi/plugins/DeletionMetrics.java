@@ -0,0 +1,74 @@
+package de.intranda.goobi.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Registry of the deletion statistics per target type. Each target type is published as MXBean with the name
+ * {@code de.intranda.goobi.plugins:type=DeleteContent,target=<target type>}, so it can be read with any JMX client.
+ */
+@Log4j2
+public class DeletionMetrics {
+
+    public static final String JMX_DOMAIN = "de.intranda.goobi.plugins";
+
+    private static final DeletionMetrics INSTANCE = new DeletionMetrics(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+
+    private final Map<String, TargetMetrics> metrics = new ConcurrentHashMap<>();
+
+    public static DeletionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    DeletionMetrics(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Record the deletion of a single target
+     * 
+     * @param targetType type of the target
+     * @param millis wall time of the deletion
+     * @param counter files and bytes that were removed
+     * @param success false, if the deletion failed
+     */
+    public void record(String targetType, long millis, DeletionCounter counter, boolean success) {
+        getTargetMetrics(targetType).record(millis, counter.getFiles(), counter.getBytes(), success);
+    }
+
+    public TargetMetrics getTargetMetrics(String targetType) {
+        return metrics.computeIfAbsent(targetType, this::register);
+    }
+
+    public Collection<TargetMetrics> getAllTargetMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    private TargetMetrics register(String targetType) {
+        TargetMetrics targetMetrics = new TargetMetrics(targetType);
+        if (server != null) {
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=DeleteContent,target=" + ObjectName.quote(targetType));
+                if (server.isRegistered(name)) {
+                    // left over from a previous deployment of the plugin
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(targetMetrics, name);
+            } catch (JMException e) {
+                log.warn("Cannot register deletion metrics for {}", targetType, e);
+            }
+        }
+        return targetMetrics;
+    }
+}
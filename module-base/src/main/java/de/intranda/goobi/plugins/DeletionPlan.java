@@ -0,0 +1,50 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Result of a dry run: all folders selected by the configuration of a task, with the number of files and bytes that would be deleted
+ */
+@Getter
+@Setter
+public class DeletionPlan {
+
+    private Integer processId;
+    private String processTitle;
+    private String stepTitle;
+    private String created;
+
+    private long totalFiles;
+    private long totalBytes;
+
+    private List<PlannedTarget> targets = new ArrayList<>();
+
+    public void addTarget(PlannedTarget target) {
+        targets.add(target);
+        totalFiles += target.getFiles();
+        totalBytes += target.getBytes();
+    }
+
+    @Getter
+    public static class PlannedTarget {
+        private final String type;
+        private final String path;
+        private final DeletionTarget.Kind kind;
+        private final boolean exists;
+        private final long files;
+        private final long bytes;
+
+        public PlannedTarget(DeletionTarget target, boolean exists, long files, long bytes) {
+            type = target.getType();
+            path = target.getPath().toString();
+            kind = target.getKind();
+            this.exists = exists;
+            this.files = files;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import de.intranda.goobi.plugins.DeletionPlan.PlannedTarget;
+import de.intranda.goobi.plugins.DeletionTarget.Kind;
+import de.intranda.goobi.plugins.MetadataBackupRetention.Backup;
+import de.intranda.goobi.plugins.S3DeletionClient.ObjectPage;
+import lombok.Setter;
+
+/**
+ * Estimates the number of files and bytes of deletion targets without deleting anything. Directory trees on the local file system are walked
+ * in parallel, on S3 the prefixes are listed.
+ */
+public class DeletionPlanner implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+
+    private final S3DeletionClient s3Client;
+
+    /** retention of the metadata backups, needed to estimate targets of the kind BACKUPS */
+    @Setter
+    private MetadataBackupRetention backupRetention;
+
+    /**
+     * @param parallelism number of threads to walk the directories
+     * @param s3Client client to list the objects, if the data is stored in S3, null otherwise
+     */
+    public DeletionPlanner(int parallelism, S3DeletionClient s3Client) {
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.s3Client = s3Client;
+    }
+
+    /**
+     * Estimate the size of a single target
+     * 
+     * @param target the target
+     * @return the estimation
+     * @throws IOException
+     */
+    public PlannedTarget estimate(DeletionTarget target) throws IOException {
+        if (target.getKind() == Kind.BACKUPS) {
+            return estimateBackups(target);
+        }
+        if (s3Client != null) {
+            return estimateS3(target);
+        }
+        Path path = target.getPath();
+        if (!Files.isDirectory(path)) {
+            return new PlannedTarget(target, false, 0, 0);
+        }
+        try {
+            long[] size = pool.invoke(new SizeTask(path, path, target.getKind() != Kind.FILES, target.getContentFilter()));
+            return new PlannedTarget(target, true, size[0], size[1]);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Estimate the sizes of all targets and add them to the plan
+     * 
+     * @param plan the plan to fill
+     * @param targets the targets
+     * @throws IOException
+     */
+    public void estimate(DeletionPlan plan, List<DeletionTarget> targets) throws IOException {
+        for (DeletionTarget target : targets) {
+            plan.addTarget(estimate(target));
+        }
+    }
+
+    private PlannedTarget estimateBackups(DeletionTarget target) throws IOException {
+        if (s3Client != null || backupRetention == null) {
+            // backups in S3 are kept
+            return new PlannedTarget(target, false, 0, 0);
+        }
+        List<Backup> backups = backupRetention.findExpiredBackups(target.getPath(), Instant.now());
+        long bytes = 0;
+        for (Backup backup : backups) {
+            bytes += backup.getSize();
+        }
+        return new PlannedTarget(target, !backups.isEmpty(), backups.size(), bytes);
+    }
+
+    private PlannedTarget estimateS3(DeletionTarget target) throws IOException {
+        String prefix = AmazonS3DeletionClient.getPrefix(target.getPath());
+        ContentFilter filter = target.getContentFilter();
+        boolean exists = false;
+        long files = 0;
+        long bytes = 0;
+        String token = null;
+        do {
+            DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+            ObjectPage page = s3Client.listObjects(prefix, token);
+            exists = exists || !page.getKeys().isEmpty();
+            if (filter == null) {
+                files += page.getKeys().size();
+                bytes += page.getBytes();
+            } else {
+                for (int i = 0; i < page.getKeys().size(); i++) {
+                    String relativeKey = page.getKeys().get(i).substring(prefix.length());
+                    if (!relativeKey.isEmpty() && filter.matches(Paths.get(relativeKey))) {
+                        files++;
+                        bytes += page.getSize(i);
+                    }
+                }
+            }
+            token = page.getNextContinuationToken();
+        } while (token != null);
+        return new PlannedTarget(target, exists, files, bytes);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Counts files and bytes within a directory, sub directories are counted by forked tasks
+     */
+    private static class SizeTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 7730956839283563385L;
+
+        private final transient Path root;
+
+        private final transient Path directory;
+
+        private final boolean recursive;
+
+        private final transient ContentFilter filter;
+
+        SizeTask(Path root, Path directory, boolean recursive, ContentFilter filter) {
+            this.root = root;
+            this.directory = directory;
+            this.recursive = recursive;
+            this.filter = filter;
+        }
+
+        @Override
+        protected long[] compute() {
+            long files = 0;
+            long bytes = 0;
+            List<SizeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (recursive) {
+                            subtasks.add(new SizeTask(root, entry, true, filter));
+                        }
+                    } else if ((recursive || attributes.isRegularFile()) && (filter == null || filter.matches(root.relativize(entry)))) {
+                        files++;
+                        bytes += attributes.size();
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return new long[] { 0, 0 };
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (SizeTask subtask : ForkJoinTask.invokeAll(subtasks)) {
+                long[] size = subtask.join();
+                files += size[0];
+                bytes += size[1];
+            }
+            return new long[] { files, bytes };
+        }
+    }
+}
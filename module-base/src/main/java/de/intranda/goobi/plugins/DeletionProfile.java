@@ -0,0 +1,173 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+
+import lombok.Getter;
+
+/**
+ * Immutable, resolved configuration of the plugin for one project and task. All values are read once from the configuration, so a profile can
+ * be shared between all executions of the same task.
+ */
+@Getter
+public class DeletionProfile {
+
+    private final boolean deleteAllContentFromImageDirectory;
+    private final boolean deleteAllContentFromThumbsDirectory;
+    private final boolean deleteAllContentFromOcrDirectory;
+
+    private final boolean deleteMediaDirectory;
+    private final boolean deleteMasterDirectory;
+    private final boolean deleteSourceDirectory;
+    private final boolean deleteFallbackDirectory;
+
+    private final List<String> additionalImageFolder;
+
+    private final boolean deleteAltoDirectory;
+    private final boolean deletePdfDirectory;
+    private final boolean deleteTxtDirectory;
+    private final boolean deleteWcDirectory;
+    private final boolean deleteXmlDirectory;
+
+    private final boolean deleteExportDirectory;
+    private final boolean deleteImportDirectory;
+    private final boolean deleteProcesslogDirectory;
+    private final boolean deleteMetadataFiles;
+
+    private final boolean deactivateProcess;
+
+    private final boolean deleteValidationDirectory;
+
+    private final int parallelism;
+    private final boolean relativeDeletion;
+    private final boolean useTrash;
+    private final boolean streamingMetadataDeletion;
+
+    private final boolean dryRun;
+    private final boolean asynchronous;
+    private final String dryRunFolder;
+
+    /** number of the newest backups of meta.xml and meta_anchor.xml to keep, 0 if not limited by number */
+    private final int backupRetentionCount;
+    /** backups of meta.xml and meta_anchor.xml younger than this are kept, 0 if not limited by age */
+    private final int backupRetentionDays;
+
+    /** names of the metadata types to remove from the meta.xml file */
+    private final List<String> metadataToDelete;
+    /** the same names grouped by the structure elements they are removed from */
+    private final Map<MetadataRemover.Scope, Set<String>> metadataScopes;
+
+    /** names of the process properties to delete */
+    private final Set<String> propertiesToDelete;
+
+    /** folder for the archives written before the deletion, empty if nothing is archived */
+    private final String archiveFolder;
+    /** types of the targets to archive, all targets if this is empty */
+    private final List<String> archiveTargets;
+
+    /** folders with the exported copy of a target, by target type */
+    private final Map<String, String> exportFolders;
+    private final String exportChecksumAlgorithm;
+
+    /** rules to delete only some files of a target, by target type */
+    private final Map<String, ContentFilter> contentFilters;
+
+    /** invalid values of the configuration, a task with errors is not executed */
+    private final List<String> configurationErrors;
+
+    public DeletionProfile(HierarchicalConfiguration config) {
+        deleteAllContentFromImageDirectory = config.getBoolean("/deleteAllContentFromImageDirectory", false);
+        deleteAllContentFromThumbsDirectory = config.getBoolean("/deleteAllContentFromThumbsDirectory", false);
+        deleteAllContentFromOcrDirectory = config.getBoolean("/deleteAllContentFromOcrDirectory", false);
+        deleteMediaDirectory = config.getBoolean("/deleteMediaDirectory", false);
+        deleteMasterDirectory = config.getBoolean("/deleteMasterDirectory", false);
+        deleteSourceDirectory = config.getBoolean("/deleteSourceDirectory", false);
+        deleteFallbackDirectory = config.getBoolean("/deleteFallbackDirectory", false);
+
+        additionalImageFolder = Collections.unmodifiableList(Arrays.asList(config.getStringArray("/additionalFolder")));
+
+        deleteAltoDirectory = config.getBoolean("/deleteAltoDirectory", false);
+        deletePdfDirectory = config.getBoolean("/deletePdfDirectory", false);
+        deleteTxtDirectory = config.getBoolean("/deleteTxtDirectory", false);
+        deleteWcDirectory = config.getBoolean("/deleteWcDirectory", false);
+        deleteXmlDirectory = config.getBoolean("/deleteXmlDirectory", false);
+
+        deleteExportDirectory = config.getBoolean("/deleteExportDirectory", false);
+        deleteImportDirectory = config.getBoolean("/deleteImportDirectory", false);
+        deleteProcesslogDirectory = config.getBoolean("/deleteProcesslogDirectory", false);
+        deleteMetadataFiles = config.getBoolean("/deleteMetadataFiles", false);
+
+        deactivateProcess = config.getBoolean("/deactivateProcess", false);
+
+        deleteValidationDirectory = config.getBoolean("/deleteValidationDirectory", false);
+
+        parallelism = config.getInt("/parallelism", 1);
+        relativeDeletion = config.getBoolean("/relativeDeletion", false);
+        useTrash = config.getBoolean("/useTrash", false);
+        streamingMetadataDeletion = config.getBoolean("/streamingMetadataDeletion", false);
+
+        dryRun = config.getBoolean("/dryRun", false);
+        asynchronous = config.getBoolean("/asynchronous", false);
+        dryRunFolder = config.getString("/dryRunFolder", "");
+
+        backupRetentionCount = config.getInt("/metadataBackupRetention/@keep", 0);
+        backupRetentionDays = config.getInt("/metadataBackupRetention/@maxAgeDays", 0);
+
+        archiveFolder = config.getString("/archiveBeforeDeletion/@folder", "");
+        archiveTargets = Collections.unmodifiableList(Arrays.asList(config.getStringArray("/archiveBeforeDeletion/target")));
+
+        Map<String, String> folders = new HashMap<>();
+        for (HierarchicalConfiguration field : config.configurationsAt("/verifyExport/folder")) {
+            folders.put(field.getString("@target"), field.getString("."));
+        }
+        exportFolders = Collections.unmodifiableMap(folders);
+        exportChecksumAlgorithm = config.getString("/verifyExport/@algorithm", ExportVerifier.DEFAULT_ALGORITHM);
+
+        List<String> errors = new ArrayList<>();
+        List<String> metadata = new ArrayList<>();
+        Map<MetadataRemover.Scope, Set<String>> scopes = new EnumMap<>(MetadataRemover.Scope.class);
+        for (HierarchicalConfiguration field : config.configurationsAt("//deleteMetadata")) {
+            String name = field.getString("@name");
+            MetadataRemover.Scope scope = MetadataRemover.Scope.fromConfig(field.getString("@scope"));
+            if (scope == null) {
+                errors.add("Unknown scope '" + field.getString("@scope") + "' for metadata " + name);
+                continue;
+            }
+            metadata.add(name);
+            scopes.computeIfAbsent(scope, s -> new HashSet<>()).add(name);
+        }
+        metadataToDelete = Collections.unmodifiableList(metadata);
+        metadataScopes = Collections.unmodifiableMap(scopes);
+
+        Set<String> properties = new LinkedHashSet<>();
+        for (HierarchicalConfiguration field : config.configurationsAt("//deleteProperty")) {
+            properties.add(field.getString("@name"));
+        }
+        propertiesToDelete = Collections.unmodifiableSet(properties);
+
+        Map<String, ContentFilter> filters = new HashMap<>();
+        for (HierarchicalConfiguration field : config.configurationsAt("//contentFilter")) {
+            String target = field.getString("@target");
+            try {
+                filters.put(target,
+                        new ContentFilter(target, Arrays.asList(field.getStringArray("include")), Arrays.asList(field.getStringArray("exclude"))));
+            } catch (PatternSyntaxException e) {
+                // the task refuses to run, so the target is not deleted without its filter
+                errors.add("Invalid rule '" + e.getPattern() + "' in the content filter of " + target + ": " + e.getDescription());
+            }
+        }
+        contentFilters = Collections.unmodifiableMap(filters);
+        configurationErrors = Collections.unmodifiableList(errors);
+    }
+}
@@ -0,0 +1,99 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Caches the resolved {@link DeletionProfile} per project and task title. All cached profiles are dropped as soon as the modification date of
+ * the configuration file changes.
+ */
+@Log4j2
+public class DeletionProfileCache {
+
+    private static final String CONFIG_FILE_NAME = "plugin_intranda_step_deleteContent.xml";
+
+    private static DeletionProfileCache instance;
+
+    private final Path configFile;
+
+    private final Map<String, DeletionProfile> profiles = new ConcurrentHashMap<>();
+
+    private volatile long configFileModified = Long.MIN_VALUE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static synchronized DeletionProfileCache getInstance() {
+        if (instance == null) {
+            instance = new DeletionProfileCache(Paths.get(ConfigurationHelper.getInstance().getConfigurationFolder(), CONFIG_FILE_NAME));
+        }
+        return instance;
+    }
+
+    DeletionProfileCache(Path configFile) {
+        this.configFile = configFile;
+    }
+
+    /**
+     * Get the profile for a project and task
+     * 
+     * @param projectTitle title of the project
+     * @param stepTitle title of the task
+     * @param configuration provides the configuration section for project and task, it is only called if the profile is not cached
+     * @return the profile
+     */
+    public DeletionProfile getProfile(String projectTitle, String stepTitle, Supplier<HierarchicalConfiguration> configuration) {
+        checkConfigFile();
+        String key = projectTitle + '\u0000' + stepTitle;
+        DeletionProfile profile = profiles.get(key);
+        if (profile != null) {
+            hits.incrementAndGet();
+            return profile;
+        }
+        misses.incrementAndGet();
+        return profiles.computeIfAbsent(key, k -> new DeletionProfile(configuration.get()));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    private void checkConfigFile() {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(configFile).toMillis();
+        } catch (IOException e) {
+            modified = 0;
+        }
+        if (modified != configFileModified) {
+            synchronized (this) {
+                if (modified != configFileModified) {
+                    if (configFileModified != Long.MIN_VALUE) {
+                        log.debug("Configuration file {} was changed, cached profiles are dropped", configFile);
+                    }
+                    profiles.clear();
+                    configFileModified = modified;
+                }
+            }
+        }
+    }
+}
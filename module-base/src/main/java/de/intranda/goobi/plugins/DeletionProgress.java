@@ -0,0 +1,111 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Progress of the deletion of a single process. The values can be read by other threads while the deletion runs.
+ */
+public class DeletionProgress implements DeletionProgressMXBean {
+
+    public enum State {
+        /** waiting for a free thread of the asynchronous execution */
+        QUEUED,
+        /** the size of the targets is estimated */
+        PLANNING,
+        DELETING,
+        FINISHED,
+        FAILED
+    }
+
+    @Getter
+    private final int processId;
+
+    @Getter
+    private final String stepTitle;
+
+    @Getter
+    private final long created = System.currentTimeMillis();
+
+    @Getter
+    @Setter
+    private volatile State state = State.QUEUED;
+
+    /** files and bytes to delete, -1 if they are not estimated */
+    @Getter
+    private volatile long plannedFiles = -1;
+    @Getter
+    private volatile long plannedBytes = -1;
+
+    /** type of the target that is currently deleted */
+    @Getter
+    private volatile String currentTarget;
+
+    private final LongAdder completedFiles = new LongAdder();
+    private final LongAdder completedBytes = new LongAdder();
+
+    private volatile DeletionCounter currentCounter;
+
+    public DeletionProgress(int processId, String stepTitle) {
+        this.processId = processId;
+        this.stepTitle = stepTitle;
+    }
+
+    public void setPlanned(long files, long bytes) {
+        plannedFiles = files;
+        plannedBytes = bytes;
+    }
+
+    /**
+     * Start the deletion of a target
+     * 
+     * @param target the target
+     * @param counter counts the files of the target while it is deleted
+     */
+    public void startTarget(DeletionTarget target, DeletionCounter counter) {
+        currentTarget = target.getType();
+        currentCounter = counter;
+    }
+
+    /**
+     * Add the files of the current target to the completed ones
+     */
+    public void finishTarget() {
+        DeletionCounter counter = currentCounter;
+        if (counter != null) {
+            completedFiles.add(counter.getFiles());
+            completedBytes.add(counter.getBytes());
+        }
+        currentCounter = null;
+        currentTarget = null;
+    }
+
+    @Override
+    public long getDeletedFiles() {
+        DeletionCounter counter = currentCounter;
+        return completedFiles.sum() + (counter == null ? 0 : counter.getFiles());
+    }
+
+    @Override
+    public long getDeletedBytes() {
+        DeletionCounter counter = currentCounter;
+        return completedBytes.sum() + (counter == null ? 0 : counter.getBytes());
+    }
+
+    /**
+     * @return deleted bytes in percent of the planned bytes, -1 if nothing was planned
+     */
+    @Override
+    public int getPercent() {
+        long planned = plannedBytes;
+        if (planned < 0) {
+            return -1;
+        }
+        if (planned == 0) {
+            return state == State.FINISHED ? 100 : 0;
+        }
+        return (int) Math.min(100, getDeletedBytes() * 100 / planned);
+    }
+}
@@ -0,0 +1,30 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * Progress of a running deletion, published via JMX
+ */
+public interface DeletionProgressMXBean {
+
+    int getProcessId();
+
+    String getStepTitle();
+
+    long getCreated();
+
+    DeletionProgress.State getState();
+
+    long getPlannedFiles();
+
+    long getPlannedBytes();
+
+    String getCurrentTarget();
+
+    long getDeletedFiles();
+
+    long getDeletedBytes();
+
+    /**
+     * @return deleted bytes in percent of the planned bytes, -1 if nothing was planned
+     */
+    int getPercent();
+}
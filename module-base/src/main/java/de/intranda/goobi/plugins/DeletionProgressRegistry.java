@@ -0,0 +1,118 @@
+package de.intranda.goobi.plugins;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Keeps the progress of all running deletions of the JVM and runs the asynchronous deletions on a dedicated executor, so the task threads of
+ * Goobi workflow are not blocked. The progress of each running deletion is published as MXBean with the name
+ * {@code de.intranda.goobi.plugins:type=DeleteContentProgress,process=<process id>}.
+ */
+@Log4j2
+public class DeletionProgressRegistry {
+
+    /** number of asynchronous deletions that run at the same time, further ones are queued */
+    private static final int ASYNC_THREADS = 2;
+
+    private static final DeletionProgressRegistry INSTANCE = new DeletionProgressRegistry(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer server;
+
+    private final Map<Integer, DeletionProgress> running = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+
+    public static DeletionProgressRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    DeletionProgressRegistry(MBeanServer server) {
+        this.server = server;
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(ASYNC_THREADS, r -> {
+            Thread thread = new Thread(r, "delete-content-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Register the deletion of a process, unless another deletion of the process is registered. The other deletion keeps its progress, the new
+     * one fails when it tries to lock the process.
+     * 
+     * @param processId id of the process
+     * @param stepTitle title of the task
+     * @return the progress to update or null, if another deletion of the process is registered
+     */
+    public DeletionProgress register(int processId, String stepTitle) {
+        DeletionProgress progress = new DeletionProgress(processId, stepTitle);
+        if (running.putIfAbsent(processId, progress) != null) {
+            return null;
+        }
+        if (server != null) {
+            try {
+                ObjectName name = getObjectName(processId);
+                if (server.isRegistered(name)) {
+                    // an earlier deletion of the process that was not unregistered
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(progress, name);
+            } catch (JMException e) {
+                log.warn("Cannot register the deletion progress of process {}", processId, e);
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Remove the deletion of a process, it is finished or failed
+     * 
+     * @param progress the progress of the deletion
+     */
+    public void unregister(DeletionProgress progress) {
+        if (running.remove(progress.getProcessId(), progress) && server != null) {
+            try {
+                server.unregisterMBean(getObjectName(progress.getProcessId()));
+            } catch (JMException e) {
+                log.debug("Cannot unregister the deletion progress of process {}", progress.getProcessId(), e);
+            }
+        }
+    }
+
+    /**
+     * @param processId id of the process
+     * @return the progress of the running deletion or null, if the data of the process is not deleted at the moment
+     */
+    public DeletionProgress getProgress(int processId) {
+        return running.get(processId);
+    }
+
+    public List<DeletionProgress> getRunningDeletions() {
+        return new ArrayList<>(running.values());
+    }
+
+    static ObjectName getObjectName(int processId) throws JMException {
+        return new ObjectName(DeletionMetrics.JMX_DOMAIN + ":type=DeleteContentProgress,process=" + processId);
+    }
+
+    /**
+     * Run a deletion on the executor of the asynchronous deletions
+     * 
+     * @param deletion the deletion
+     */
+    public void submit(Runnable deletion) {
+        executor.execute(deletion);
+    }
+}
@@ -0,0 +1,174 @@
+package de.intranda.goobi.plugins;
+
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Limits the deletions and the metadata operations per second of all deletions running in the JVM, so that a burst of deletion tasks does not
+ * saturate a shared storage. Both limits are token buckets that allow a burst of one second. A caller that takes more permits than available
+ * waits until the permits are paid back, following callers wait behind it.
+ *
+ * The limits are shared by all tasks, they are read from the global configuration of the plugin when it is loaded. A rate of 0 disables the
+ * limit.
+ */
+@Log4j2
+public class DeletionRateLimiter implements DeletionRateLimiterMXBean {
+
+    private static final DeletionRateLimiter INSTANCE = new DeletionRateLimiter();
+
+    static {
+        register(INSTANCE, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    private final TokenBucket deletes = new TokenBucket();
+
+    private final TokenBucket metadataOperations = new TokenBucket();
+
+    public static DeletionRateLimiter getInstance() {
+        return INSTANCE;
+    }
+
+    DeletionRateLimiter() {
+    }
+
+    private static void register(DeletionRateLimiter limiter, MBeanServer server) {
+        try {
+            ObjectName name = new ObjectName(DeletionMetrics.JMX_DOMAIN + ":type=DeleteContentRateLimit");
+            if (server.isRegistered(name)) {
+                // left over from a previous deployment of the plugin
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(limiter, name);
+        } catch (JMException e) {
+            log.warn("Cannot register the deletion rate limit", e);
+        }
+    }
+
+    /**
+     * Change the limits
+     * 
+     * @param deletesPerSecond deletions per second, 0 for no limit
+     * @param metadataOperationsPerSecond listings and attribute reads per second, 0 for no limit
+     */
+    public void configure(double deletesPerSecond, double metadataOperationsPerSecond) {
+        deletes.setRate(deletesPerSecond);
+        metadataOperations.setRate(metadataOperationsPerSecond);
+    }
+
+    /**
+     * Wait until the given number of files or objects may be deleted
+     * 
+     * @param permits number of deletions
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public void acquireDeletes(int permits) throws InterruptedIOException {
+        deletes.acquire(permits);
+    }
+
+    /**
+     * Wait until the given number of listings or attribute reads may be executed
+     * 
+     * @param permits number of operations
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public void acquireMetadataOperations(int permits) throws InterruptedIOException {
+        metadataOperations.acquire(permits);
+    }
+
+    @Override
+    public double getDeletesPerSecond() {
+        return deletes.rate;
+    }
+
+    @Override
+    public double getMetadataOperationsPerSecond() {
+        return metadataOperations.rate;
+    }
+
+    @Override
+    public long getDeleteWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deletes.waitNanos.sum());
+    }
+
+    @Override
+    public long getMetadataWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(metadataOperations.waitNanos.sum());
+    }
+
+    @Override
+    public long getThrottledDeletes() {
+        return deletes.throttled.sum();
+    }
+
+    @Override
+    public long getThrottledMetadataOperations() {
+        return metadataOperations.throttled.sum();
+    }
+
+    static class TokenBucket {
+
+        private volatile double rate;
+
+        private double tokens;
+
+        private long lastRefill = System.nanoTime();
+
+        private final LongAdder waitNanos = new LongAdder();
+
+        private final LongAdder throttled = new LongAdder();
+
+        synchronized void setRate(double permitsPerSecond) {
+            double newRate = Math.max(0, permitsPerSecond);
+            if (newRate == rate) {
+                // keep the state, otherwise every started task could use a full burst
+                return;
+            }
+            rate = newRate;
+            // start with a full bucket
+            tokens = rate;
+            lastRefill = System.nanoTime();
+        }
+
+        void acquire(int permits) throws InterruptedIOException {
+            if (rate <= 0) {
+                return;
+            }
+            long wait = reserve(permits);
+            if (wait > 0) {
+                throttled.increment();
+                waitNanos.add(wait);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the deletion rate limit");
+                }
+            }
+        }
+
+        /**
+         * Take the permits and calculate the time to wait until they are paid back
+         * 
+         * @return nanoseconds to wait
+         */
+        synchronized long reserve(int permits) {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            // the burst is limited to the permits of one second
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+            lastRefill = now;
+            tokens -= permits;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+}
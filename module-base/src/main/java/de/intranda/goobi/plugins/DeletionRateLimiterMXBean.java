@@ -0,0 +1,37 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * Configuration and throttling statistics of the JVM-wide deletion rate limit, published via JMX
+ */
+public interface DeletionRateLimiterMXBean {
+
+    /**
+     * @return allowed deletions per second, 0 if unlimited
+     */
+    double getDeletesPerSecond();
+
+    /**
+     * @return allowed metadata operations (listings and attribute reads) per second, 0 if unlimited
+     */
+    double getMetadataOperationsPerSecond();
+
+    /**
+     * @return total time callers waited for deletion permits in milliseconds
+     */
+    long getDeleteWaitMillis();
+
+    /**
+     * @return total time callers waited for metadata permits in milliseconds
+     */
+    long getMetadataWaitMillis();
+
+    /**
+     * @return number of deletion requests that had to wait
+     */
+    long getThrottledDeletes();
+
+    /**
+     * @return number of metadata requests that had to wait
+     */
+    long getThrottledMetadataOperations();
+}
@@ -0,0 +1,77 @@
+package de.intranda.goobi.plugins;
+
+import java.nio.file.Path;
+
+import lombok.Getter;
+
+/**
+ * A folder or a set of files that is selected for deletion by the plugin configuration
+ */
+@Getter
+public class DeletionTarget {
+
+    public static final String IMAGES = "images";
+    public static final String MASTER = "master";
+    public static final String MEDIA = "media";
+    public static final String FALLBACK = "fallback";
+    public static final String SOURCE = "source";
+    public static final String ADDITIONAL_PREFIX = "additional:";
+    public static final String THUMBS = "thumbs";
+    public static final String OCR = "ocr";
+    public static final String ALTO = "alto";
+    public static final String PDF = "pdf";
+    public static final String TXT = "txt";
+    public static final String WC = "wc";
+    public static final String XML = "xml";
+    public static final String EXPORT = "export";
+    public static final String IMPORT = "import";
+    public static final String METADATA_FILES = "metadataFiles";
+    public static final String METADATA_BACKUPS = "metadataBackups";
+    public static final String PROCESSLOG = "processlog";
+    public static final String VALIDATION = "validation";
+
+    public enum Kind {
+        /** delete the folder including all of its content */
+        DIRECTORY,
+        /** delete all files and folders within the folder, but keep the folder itself */
+        CONTENT,
+        /** delete the regular files within the folder, sub folders are kept */
+        FILES,
+        /** delete the backups of the metadata files within the folder that are outside of the retention window */
+        BACKUPS
+    }
+
+    /** name of the target type, one of the constants of this class */
+    private final String type;
+
+    private final Path path;
+
+    private final Kind kind;
+
+    /** selects the files to delete, null if everything is deleted */
+    private final ContentFilter contentFilter;
+
+    public DeletionTarget(String type, Path path, Kind kind) {
+        this(type, path, kind, null);
+    }
+
+    public DeletionTarget(String type, Path path, Kind kind, ContentFilter contentFilter) {
+        this.type = type;
+        this.path = path;
+        this.kind = kind;
+        this.contentFilter = contentFilter;
+    }
+
+    /**
+     * @param filter selects the files to delete
+     * @return a copy of this target that deletes only the selected files
+     */
+    public DeletionTarget withContentFilter(ContentFilter filter) {
+        return new DeletionTarget(type, path, kind, filter);
+    }
+
+    @Override
+    public String toString() {
+        return type + " (" + path + ")";
+    }
+}
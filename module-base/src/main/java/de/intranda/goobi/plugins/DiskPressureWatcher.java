@@ -0,0 +1,283 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.goobi.beans.Process;
+import org.goobi.beans.Step;
+
+import de.sub.goobi.helper.enums.StepStatus;
+import de.sub.goobi.persistence.managers.ProcessManager;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Frees space on the file system of the metadata folder when it runs full between the regular deletions.
+ *
+ * The usage of the file system is checked in regular intervals. Once it exceeds the high water mark, the content of the processes with the most
+ * bytes in the configured folder types is deleted until the usage drops below the low water mark. The bytes of deleted folders count as freed
+ * even if the file system reports them later, e.g. while they wait in the trash area, so no more processes are deleted than needed. A process
+ * whose deletion did not free any of these bytes is not tried again for a while. A process is only used if the task of this plugin is the next one in its workflow,
+ * and only the folders selected by the configuration of that task are deleted. The task itself stays open and is executed as usual when the
+ * workflow reaches it. A task that is already in work is left alone, and the lock of the process keeps the watcher and a running task
+ * from deleting at the same time, see {@link DeletionJournal#tryLock(java.nio.file.Path, int)}. The candidates are taken from the {@link ProcessSizeIndex}, its crawler is started together with the watcher.
+ */
+@Log4j2
+public class DiskPressureWatcher {
+
+    /** largest processes that are considered on each check */
+    static final int MAX_CANDIDATES = 1000;
+
+    /** processes without a reachable deletion task or whose deletion freed nothing are not tried again within this time */
+    static final long SKIP_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static DiskPressureWatcher instance;
+
+    /**
+     * Reads the usage of the file system in percent
+     */
+    @FunctionalInterface
+    interface UsageProvider {
+        double getUsage() throws IOException;
+    }
+
+    /**
+     * Deletes the content of a process
+     */
+    @FunctionalInterface
+    interface ProcessReclaimer {
+        /**
+         * @return true if the process was eligible and its deletion was executed
+         */
+        boolean reclaim(int processId);
+    }
+
+    private final ProcessSizeIndex index;
+
+    private final UsageProvider usageProvider;
+
+    private final ProcessReclaimer reclaimer;
+
+    /** folder types of the size index whose bytes are reclaimed, e.g. master or ocr */
+    @Getter
+    private final Set<String> targetTypes;
+
+    @Getter
+    private final double highWaterMark;
+
+    @Getter
+    private final double lowWaterMark;
+
+    /** size of the file system in bytes, used to convert the freed bytes into a usage */
+    private final long totalSpace;
+
+    private final Map<Integer, Long> skippedUntil = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @Getter
+    private volatile long reclaimedProcesses;
+
+    /**
+     * Start the watcher. It is started only once per JVM, when the plugin is loaded.
+     *
+     * @param pluginTitle title of the plugin, used to find the deletion tasks
+     * @param high usage in percent that starts the deletion, 0 if the watcher is disabled
+     * @param low usage in percent that stops the deletion, 0 to use the high water mark
+     * @param intervalMinutes time between two checks
+     * @param targetTypes folder types of the size index that are deleted by the tasks, used to rank the processes
+     */
+    public static synchronized void startIfEnabled(String pluginTitle, double high, double low, long intervalMinutes, Set<String> targetTypes) {
+        if (instance != null || high <= 0) {
+            return;
+        }
+        if (targetTypes.isEmpty()) {
+            log.error("The disk pressure watcher is not started, no folder type is configured as target");
+            return;
+        }
+        double lowWaterMark = low > 0 ? low : high;
+        ProcessSizeIndex index = ProcessSizeIndex.start();
+        Path metadataFolder = index.getMetadataFolder();
+        long totalSpace;
+        try {
+            totalSpace = Files.getFileStore(metadataFolder).getTotalSpace();
+        } catch (IOException e) {
+            log.error("The disk pressure watcher is not started, the file system of {} cannot be read", metadataFolder, e);
+            return;
+        }
+        instance = new DiskPressureWatcher(index, () -> getUsage(metadataFolder), processId -> reclaimProcess(processId, pluginTitle),
+                targetTypes, high, lowWaterMark, totalSpace);
+        instance.start(intervalMinutes);
+        log.info("Disk pressure watcher started for {}, high water mark {}%, low water mark {}%, targets {}", metadataFolder, high, lowWaterMark,
+                targetTypes);
+    }
+
+    DiskPressureWatcher(ProcessSizeIndex index, UsageProvider usageProvider, ProcessReclaimer reclaimer, Set<String> targetTypes, double highWaterMark,
+            double lowWaterMark, long totalSpace) {
+        if (lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException("The low water mark " + lowWaterMark + " is above the high water mark " + highWaterMark);
+        }
+        this.index = index;
+        this.usageProvider = usageProvider;
+        this.reclaimer = reclaimer;
+        this.targetTypes = targetTypes;
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.totalSpace = totalSpace;
+    }
+
+    void start(long intervalMinutes) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "delete-content-disk-pressure");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 0, Math.max(1, intervalMinutes), TimeUnit.MINUTES);
+    }
+
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void tick() {
+        try {
+            check();
+        } catch (IOException | RuntimeException e) {
+            log.error("Error while checking the disk usage", e);
+        }
+    }
+
+    /**
+     * Delete content if the usage is above the high water mark
+     *
+     * @return number of processes whose content was deleted
+     * @throws IOException if the usage cannot be read
+     */
+    int check() throws IOException {
+        double usage = usageProvider.getUsage();
+        if (usage < highWaterMark) {
+            return 0;
+        }
+        log.warn("Usage of the metadata folder is {}%, deleting content until it is below {}%", Math.round(usage), lowWaterMark);
+        long now = System.currentTimeMillis();
+        skippedUntil.values().removeIf(until -> until < now);
+        int reclaimed = 0;
+        double startUsage = usage;
+        long freedBytes = 0;
+        List<ProcessSizeIndex.ProcessSizes> candidates = index.getLargestProcesses(targetTypes, MAX_CANDIDATES);
+        for (ProcessSizeIndex.ProcessSizes candidate : candidates) {
+            if (usage < lowWaterMark) {
+                break;
+            }
+            int processId = candidate.getProcessId();
+            if (skippedUntil.containsKey(processId)) {
+                continue;
+            }
+            long freed = reclaim(processId, candidate.getBytes(targetTypes));
+            if (freed > 0) {
+                reclaimed++;
+                freedBytes += freed;
+                // folders in the trash area are deleted by the reaper in the background, the file system reports their space later
+                usage = Math.min(usageProvider.getUsage(), startUsage - 100.0 * freedBytes / totalSpace);
+            } else {
+                skippedUntil.put(processId, now + SKIP_MILLIS);
+            }
+        }
+        reclaimedProcesses += reclaimed;
+        if (usage >= lowWaterMark) {
+            log.warn("Usage of the metadata folder is still {}% after deleting the content of {} processes", Math.round(usage), reclaimed);
+        } else {
+            log.info("Usage of the metadata folder is {}% after deleting the content of {} processes", Math.round(usage), reclaimed);
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Delete the content of a process and measure it again
+     *
+     * @return bytes of the target types that were freed, 0 if the process was not eligible
+     */
+    private long reclaim(int processId, long reclaimableBytes) {
+        if (!reclaimer.reclaim(processId)) {
+            return 0;
+        }
+        try {
+            ProcessSizeIndex.ProcessSizes after = index.refresh(processId);
+            long freed = reclaimableBytes - (after == null ? 0 : after.getBytes(targetTypes));
+            if (freed <= 0) {
+                log.info("Deletion of process {} did not free any bytes of {}", processId, targetTypes);
+            }
+            return freed;
+        } catch (IOException e) {
+            log.warn("Cannot measure process {} after its deletion", processId, e);
+            return 0;
+        }
+    }
+
+    private static double getUsage(Path folder) throws IOException {
+        FileStore store = Files.getFileStore(folder);
+        long total = store.getTotalSpace();
+        return total == 0 ? 0 : 100.0 * (total - store.getUsableSpace()) / total;
+    }
+
+    /**
+     * Delete the content of a process with the configuration of its deletion task, if this task is the next one of the workflow
+     */
+    private static boolean reclaimProcess(int processId, String pluginTitle) {
+        try {
+            Process process = ProcessManager.getProcessById(processId);
+            Step deletionStep = process == null ? null : findReachableStep(process, pluginTitle);
+            if (deletionStep == null) {
+                return false;
+            }
+            DeleteContentPlugin plugin = new DeleteContentPlugin();
+            plugin.initialize(deletionStep, "");
+            if (plugin.isDryRun()) {
+                return false;
+            }
+            plugin.setContentOnly(true);
+            return plugin.execute();
+        } catch (RuntimeException e) {
+            log.error("Cannot delete the content of process {}", processId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Find the task of this plugin, if it is open and all tasks before it are finished or deactivated. A task in work or with an error is
+     * handled by its own run.
+     */
+    static Step findReachableStep(Process process, String pluginTitle) {
+        Step deletionStep = null;
+        for (Step step : process.getSchritte()) {
+            if (pluginTitle.equals(step.getStepPlugin()) && !isFinished(step)) {
+                deletionStep = step;
+                break;
+            }
+        }
+        if (deletionStep == null || deletionStep.getBearbeitungsstatusEnum() != StepStatus.OPEN) {
+            return null;
+        }
+        for (Step step : process.getSchritte()) {
+            if (step.getReihenfolge() < deletionStep.getReihenfolge() && !isFinished(step)) {
+                return null;
+            }
+        }
+        return deletionStep;
+    }
+
+    private static boolean isFinished(Step step) {
+        return step.getBearbeitungsstatusEnum() == StepStatus.DONE || step.getBearbeitungsstatusEnum() == StepStatus.DEACTIVATED;
+    }
+}
@@ -0,0 +1,174 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Checks that every file of a folder has an identical copy in an export folder, before the folder gets deleted.
+ *
+ * The sizes of all files are compared first, so a missing or incomplete copy is found without reading any content. Afterwards both files of
+ * each pair are hashed by a thread pool. The files are read with a large direct buffer per thread, so the hashing keeps up with the disks
+ * instead of waiting for small reads. The check stops at the first differing pair.
+ */
+@Log4j2
+public class ExportVerifier implements AutoCloseable {
+
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    @Getter
+    private final String algorithm;
+
+    private final ExecutorService hashers;
+
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /** number of bytes hashed so far, source and export files are counted both */
+    @Getter
+    private final LongAdder hashedBytes = new LongAdder();
+
+    /**
+     * @param algorithm name of the {@link MessageDigest} algorithm, e.g. SHA-256 or MD5
+     * @param parallelism number of threads that hash files
+     */
+    public ExportVerifier(String algorithm, int parallelism) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown checksum algorithm " + algorithm, e);
+        }
+        this.algorithm = algorithm;
+        hashers = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "delete-content-verify-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Compare all files below the source folder with the files at the same relative path below the export folder. Additional files in the
+     * export folder are ignored.
+     *
+     * @param sourceFolder the folder that gets deleted
+     * @param exportFolder the folder with the exported copy
+     * @param fileFilter selects the files to compare by their path relative to the source folder
+     * @return descriptions of the files without an identical copy, empty if all files were found
+     * @throws IOException if a folder cannot be read
+     */
+    public List<String> verify(Path sourceFolder, Path exportFolder, Predicate<Path> fileFilter) throws IOException {
+        List<String> mismatches = new ArrayList<>();
+        if (!Files.isDirectory(sourceFolder)) {
+            return mismatches;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(sourceFolder)) {
+            files = stream.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(path -> fileFilter.test(sourceFolder.relativize(path)))
+                    .collect(Collectors.toList());
+        }
+
+        // first pass: missing files and different sizes, nothing is read
+        for (Path source : files) {
+            Path relative = sourceFolder.relativize(source);
+            Path copy = exportFolder.resolve(relative.toString());
+            if (!Files.isRegularFile(copy)) {
+                mismatches.add(relative + ": missing in " + exportFolder);
+            } else if (Files.size(source) != Files.size(copy)) {
+                mismatches.add(relative + ": size differs");
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            return mismatches;
+        }
+
+        // second pass: checksums of both files
+        List<Future<String>> results = new ArrayList<>(files.size());
+        for (Path source : files) {
+            Path relative = sourceFolder.relativize(source);
+            results.add(hashers.submit(() -> compare(source, exportFolder.resolve(relative.toString()), relative)));
+        }
+        try {
+            for (Future<String> result : results) {
+                String mismatch = result.get();
+                if (mismatch != null) {
+                    mismatches.add(mismatch);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while verifying " + sourceFolder);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<String> result : results) {
+                result.cancel(true);
+            }
+        }
+        return mismatches;
+    }
+
+    private String compare(Path source, Path copy, Path relative) throws IOException {
+        byte[] sourceHash = hash(source);
+        byte[] copyHash = hash(copy);
+        return MessageDigest.isEqual(sourceHash, copyHash) ? null : relative + ": " + algorithm + " checksum differs";
+    }
+
+    /**
+     * Hash a file with the buffer of the current thread
+     */
+    byte[] hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // checked in the constructor
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+                hashedBytes.add(read);
+            }
+        }
+        return digest.digest();
+    }
+
+    @Override
+    public void close() {
+        hashers.shutdownNow();
+    }
+}
@@ -0,0 +1,329 @@
+package de.intranda.goobi.plugins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes the content of a folder into a zip archive before the folder gets deleted, e.g. to keep a copy of the master images in a cold storage.
+ *
+ * The files are read once and written directly into the archive, there are no temporary copies of the content. Text based files like ALTO,
+ * plain text or xml are compressed in parallel by a small thread pool, while the writer thread already streams the next image. Images and other
+ * files that are compressed already are stored without compression. The archive is written as {@code .part} file, read again and compared with
+ * the CRC-32 checksums of the source files. Only a verified archive is synchronized to disk and renamed to its final name, the rename is
+ * synchronized as well.
+ */
+@Log4j2
+public class FolderArchiver implements AutoCloseable {
+
+    /** file extensions that are deflated, all other files are stored */
+    static final Set<String> COMPRESSIBLE_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("xml", "txt", "html", "htm",
+            "hocr", "json", "csv")));
+
+    /** compressible files up to this size are compressed in memory by the thread pool, larger ones are compressed by the writer thread */
+    static final long MAX_BUFFERED_SIZE = 16L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    @Getter
+    private final Path archiveFolder;
+
+    private final ExecutorService compressors;
+
+    // number of compressed entries that may wait for the writer
+    private final int window;
+
+    /**
+     * @param archiveFolder folder for the archives
+     * @param parallelism number of threads that compress files
+     */
+    public FolderArchiver(Path archiveFolder, int parallelism) {
+        this.archiveFolder = archiveFolder;
+        int threads = Math.max(1, parallelism);
+        window = threads * 2;
+        compressors = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "delete-content-archive-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the archive file of a deletion target
+     *
+     * @param processId id of the process
+     * @param targetType type of the deletion target
+     * @return the path of the archive
+     */
+    public Path getArchiveFile(int processId, String targetType) {
+        return archiveFolder.resolve(String.valueOf(processId)).resolve(targetType.replace(':', '_') + ".zip");
+    }
+
+    /**
+     * Write the files of a folder into a zip archive and verify it. An existing archive is replaced.
+     *
+     * @param folder the folder to archive
+     * @param recursive true if the files of sub folders are archived as well
+     * @param fileFilter selects the files by their path relative to the folder
+     * @param archiveFile the archive to write
+     * @return number of archived files, 0 if there was nothing to archive and no archive was written
+     * @throws IOException if the archive cannot be written or does not match the source files
+     */
+    public int archive(Path folder, boolean recursive, Predicate<Path> fileFilter, Path archiveFile) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(folder, recursive ? Integer.MAX_VALUE : 1)) {
+            files = stream.filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                    .filter(path -> fileFilter.test(folder.relativize(path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        Files.createDirectories(archiveFile.getParent());
+        Path partFile = archiveFile.resolveSibling(archiveFile.getFileName() + ".part");
+        Map<String, Long> checksums = new LinkedHashMap<>();
+        try {
+            write(folder, files, partFile, checksums);
+            verify(partFile, checksums);
+            // the source folder is deleted afterwards, so the archive must be on disk before it gets its final name
+            force(partFile);
+            Files.move(partFile, archiveFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(archiveFile.getParent());
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+        log.debug("Archived {} files of {} into {}", files.size(), folder, archiveFile);
+        return files.size();
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Write the directory entry of a renamed file to disk. Not every platform can open a directory, in this case the rename is left to the file
+     * system.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            log.debug("Cannot open {} to write it to disk", directory, e);
+            return;
+        }
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void write(Path folder, List<Path> files, Path partFile, Map<String, Long> checksums) throws IOException {
+        Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(partFile)) {
+            out.setUseZip64(Zip64Mode.AsNeeded);
+            for (Path file : files) {
+                String name = getEntryName(folder.relativize(file));
+                long size = Files.size(file);
+                if (isCompressible(file) && size <= MAX_BUFFERED_SIZE) {
+                    pending.add(compressors.submit(() -> compress(file, name)));
+                    while (pending.size() >= window) {
+                        writeCompressed(out, take(pending), checksums);
+                    }
+                } else {
+                    writeStreamed(out, file, name, size, checksums);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeCompressed(out, take(pending), checksums);
+            }
+        } finally {
+            for (Future<CompressedEntry> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static CompressedEntry take(Deque<Future<CompressedEntry>> pending) throws IOException {
+        try {
+            return pending.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Deflate a file into memory, the raw data is copied into the archive by the writer thread
+     */
+    static CompressedEntry compress(Path file, String name) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file); DeflaterOutputStream deflate = new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(bytes)) > 0) {
+                crc.update(bytes, 0, read);
+                deflate.write(bytes, 0, read);
+                size += read;
+            }
+        } finally {
+            deflater.end();
+        }
+        return new CompressedEntry(name, Files.getLastModifiedTime(file).toMillis(), size, crc.getValue(), buffer.toByteArray());
+    }
+
+    private static void writeCompressed(ZipArchiveOutputStream out, CompressedEntry compressed, Map<String, Long> checksums) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(compressed.name);
+        entry.setMethod(ZipEntry.DEFLATED);
+        entry.setTime(compressed.lastModified);
+        entry.setSize(compressed.size);
+        entry.setCompressedSize(compressed.data.length);
+        entry.setCrc(compressed.crc);
+        out.addRawArchiveEntry(entry, new ByteArrayInputStream(compressed.data));
+        checksums.put(compressed.name, compressed.crc);
+    }
+
+    private static void writeStreamed(ZipArchiveOutputStream out, Path file, String name, long size, Map<String, Long> checksums) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        // the archive is written into a file, so the sizes and the checksum of stored entries are set afterwards
+        entry.setMethod(isCompressible(file) ? ZipEntry.DEFLATED : ZipEntry.STORED);
+        entry.setTime(Files.getLastModifiedTime(file).toMillis());
+        entry.setSize(size);
+        out.putArchiveEntry(entry);
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(file)) {
+            copy(in, out, crc);
+        }
+        out.closeArchiveEntry();
+        checksums.put(name, crc.getValue());
+    }
+
+    /**
+     * Read all entries of the archive and compare them with the checksums of the source files
+     */
+    static void verify(Path archive, Map<String, Long> checksums) throws IOException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            int entries = Collections.list(zip.getEntries()).size();
+            if (entries != checksums.size()) {
+                throw new IOException("Archive " + archive + " contains " + entries + " entries instead of " + checksums.size());
+            }
+            for (Map.Entry<String, Long> expected : checksums.entrySet()) {
+                ZipArchiveEntry entry = zip.getEntry(expected.getKey());
+                if (entry == null) {
+                    throw new IOException("Entry " + expected.getKey() + " is missing in archive " + archive);
+                }
+                CRC32 crc = new CRC32();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    copy(in, null, crc);
+                }
+                if (crc.getValue() != expected.getValue() || entry.getCrc() != expected.getValue()) {
+                    throw new IOException("Checksum of entry " + expected.getKey() + " in archive " + archive + " does not match the source file");
+                }
+            }
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, CRC32 crc) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(bytes)) > 0) {
+            crc.update(bytes, 0, read);
+            if (out != null) {
+                out.write(bytes, 0, read);
+            }
+        }
+    }
+
+    static boolean isCompressible(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && COMPRESSIBLE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String getEntryName(Path relativePath) {
+        List<String> names = new ArrayList<>();
+        for (Path name : relativePath) {
+            names.add(name.toString());
+        }
+        return String.join("/", names);
+    }
+
+    @Override
+    public void close() {
+        compressors.shutdownNow();
+    }
+
+    static class CompressedEntry {
+        private final String name;
+        private final long lastModified;
+        private final long size;
+        private final long crc;
+        private final byte[] data;
+
+        CompressedEntry(String name, long lastModified, long size, long crc, byte[] data) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.crc = crc;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Executes a statement for a list of rows given by their ids, with the ids in the IN list of the statement.
+ *
+ * Large lists are split into several statements of at most {@link #MAX_IDS_PER_STATEMENT} ids. All statements run within one transaction, so
+ * either all rows are changed or none.
+ */
+public class IdListTransaction {
+
+    /** ids per statement, larger lists are split into several statements within the same transaction */
+    static final int MAX_IDS_PER_STATEMENT = 1000;
+
+    /**
+     * Opens the database connection, the connection is closed after the transaction
+     */
+    @FunctionalInterface
+    public interface ConnectionProvider {
+        Connection getConnection() throws SQLException;
+    }
+
+    private final ConnectionProvider connectionProvider;
+
+    public IdListTransaction(ConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Execute the statement for all ids
+     *
+     * @param sql the statement, %s is replaced by the placeholders of the ids
+     * @param ids ids of the rows
+     * @param parameters values of the placeholders before the IN list
+     * @return number of changed rows
+     * @throws SQLException
+     */
+    public int executeUpdate(String sql, List<Integer> ids, int... parameters) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = connectionProvider.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                int changed = 0;
+                for (int start = 0; start < ids.size(); start += MAX_IDS_PER_STATEMENT) {
+                    List<Integer> batch = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_STATEMENT));
+                    try (PreparedStatement statement = connection.prepareStatement(String.format(sql,
+                            String.join(", ", Collections.nCopies(batch.size(), "?"))))) {
+                        for (int i = 0; i < parameters.length; i++) {
+                            statement.setInt(i + 1, parameters[i]);
+                        }
+                        for (int i = 0; i < batch.size(); i++) {
+                            statement.setInt(parameters.length + i + 1, batch.get(i));
+                        }
+                        changed += statement.executeUpdate();
+                    }
+                }
+                connection.commit();
+                return changed;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
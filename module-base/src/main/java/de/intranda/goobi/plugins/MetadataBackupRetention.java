@@ -0,0 +1,129 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * Trims the rotating backups of meta.xml and meta_anchor.xml, e.g. meta.xml.1 to meta.xml.N, in a process folder.
+ *
+ * The backups of each file are sorted by their modification time. A backup is kept, if it is one of the newest K backups or younger than the
+ * maximum age, all others are deleted. The folder is listed once and only the entries with a backup name are read, every backup exactly once.
+ * The current meta.xml and meta_anchor.xml files are never touched.
+ */
+public class MetadataBackupRetention {
+
+    /** the backup name consists of the name of the original file and a number or a timestamp, e.g. meta.xml.3 or meta.xml.2024-06-01-120000 */
+    private static final Pattern BACKUP_NAME = Pattern.compile("(meta(?:_anchor)?\\.xml)\\.(?:\\d+|\\d{4}-\\d{2}-\\d{2}(?:[T_-][\\d.:_-]+)?)");
+
+    private final int keepNewest;
+
+    private final Duration maxAge;
+
+    /**
+     * @param keepNewest number of the newest backups to keep per file, 0 if only the age is used
+     * @param maxAge backups younger than this are kept, null if only the number is used
+     */
+    public MetadataBackupRetention(int keepNewest, Duration maxAge) {
+        this.keepNewest = Math.max(0, keepNewest);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Find the backups that are outside of the retention window
+     * 
+     * @param folder the process folder
+     * @param now the current time
+     * @return the backups to delete
+     * @throws IOException
+     */
+    public List<Backup> findExpiredBackups(Path folder, Instant now) throws IOException {
+        Map<String, List<Backup>> backupsByFile = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                Matcher matcher = BACKUP_NAME.matcher(entry.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    backupsByFile.computeIfAbsent(matcher.group(1), name -> new ArrayList<>())
+                            .add(new Backup(entry, attributes.lastModifiedTime(), attributes.size()));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no process folder, no backups
+        }
+
+        FileTime oldestToKeep = maxAge == null ? null : FileTime.from(now.minus(maxAge));
+        List<Backup> expired = new ArrayList<>();
+        for (List<Backup> backups : backupsByFile.values()) {
+            backups.sort(Comparator.comparing(Backup::getLastModified, Comparator.reverseOrder()));
+            for (int i = keepNewest; i < backups.size(); i++) {
+                Backup backup = backups.get(i);
+                if (oldestToKeep == null || backup.getLastModified().compareTo(oldestToKeep) < 0) {
+                    expired.add(backup);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Delete the backups that are outside of the retention window
+     * 
+     * @param folder the process folder
+     * @param counter counts the deleted backups
+     * @throws IOException
+     */
+    public void deleteExpiredBackups(Path folder, DeletionCounter counter) throws IOException {
+        for (Backup backup : findExpiredBackups(folder, Instant.now())) {
+            DeletionRateLimiter.getInstance().acquireDeletes(1);
+            if (Files.deleteIfExists(backup.getPath())) {
+                counter.addFile(backup.getSize());
+            }
+        }
+    }
+
+    /**
+     * @return false, if neither a number nor an age is configured and all backups would be kept
+     */
+    public boolean isEnabled() {
+        return keepNewest > 0 || maxAge != null;
+    }
+
+    @Getter
+    public static class Backup {
+        private final Path path;
+        private final FileTime lastModified;
+        private final long size;
+
+        Backup(Path path, FileTime lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package de.intranda.goobi.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.Metadata;
+
+/**
+ * Removes simple metadata from the structure elements of a loaded document. Each metadata name has a scope, all scopes are handled within one
+ * traversal of the logical and one traversal of the physical structure.
+ */
+@Log4j2
+public class MetadataRemover {
+
+    public enum Scope {
+        /** the logical top element, or the first child if the top element is an anchor */
+        TOP,
+        /** the anchor element, nothing is removed if the document has no anchor */
+        ANCHOR,
+        /** all elements of the logical structure, including anchor and top element */
+        ALL_LOGICAL,
+        /** all elements of the physical structure, including the pages */
+        PHYSICAL;
+
+        /**
+         * @param value the configured value, e.g. top or all-logical
+         * @return the scope, TOP if the value is empty, null if the value is unknown
+         */
+        public static Scope fromConfig(String value) {
+            if (StringUtils.isBlank(value)) {
+                return TOP;
+            }
+            String name = value.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+            for (Scope scope : values()) {
+                if (scope.name().equals(name)) {
+                    return scope;
+                }
+            }
+            return null;
+        }
+    }
+
+    // names to remove, precomputed for the different kinds of logical elements
+    private final Set<String> topNames;
+    private final Set<String> anchorNames;
+    private final Set<String> otherLogicalNames;
+    private final Set<String> physicalNames;
+    private final boolean topOnly;
+
+    /**
+     * @param namesByScope names of the metadata types to remove for each scope
+     */
+    public MetadataRemover(Map<Scope, Set<String>> namesByScope) {
+        Map<Scope, Set<String>> names = new EnumMap<>(Scope.class);
+        for (Scope scope : Scope.values()) {
+            names.put(scope, namesByScope.getOrDefault(scope, Collections.emptySet()));
+        }
+        otherLogicalNames = names.get(Scope.ALL_LOGICAL);
+        topNames = union(names.get(Scope.TOP), otherLogicalNames);
+        anchorNames = union(names.get(Scope.ANCHOR), otherLogicalNames);
+        physicalNames = names.get(Scope.PHYSICAL);
+        topOnly = names.get(Scope.ANCHOR).isEmpty() && otherLogicalNames.isEmpty() && physicalNames.isEmpty();
+    }
+
+    private static Set<String> union(Set<String> first, Set<String> second) {
+        Set<String> union = new HashSet<>(first);
+        union.addAll(second);
+        return union;
+    }
+
+    /**
+     * Check if only the logical top element is affected, these deletions can be done by the streaming {@link MetsMetadataFilter} as well
+     *
+     * @return true if no other scope than TOP is used
+     */
+    public boolean isTopOnly() {
+        return topOnly;
+    }
+
+    /**
+     * Remove the metadata from the document
+     *
+     * @param document the loaded document
+     * @return number of removed metadata, the document was not changed if this is 0
+     */
+    public int removeMetadata(DigitalDocument document) {
+        int removed = 0;
+        DocStruct logical = document.getLogicalDocStruct();
+        if (logical != null) {
+            boolean anchor = logical.getType().isAnchor();
+            DocStruct top = logical;
+            if (anchor) {
+                List<DocStruct> children = logical.getAllChildren();
+                top = children == null || children.isEmpty() ? null : children.get(0);
+            }
+            removed += removeLogical(logical, anchor ? logical : null, top);
+        }
+        if (!physicalNames.isEmpty() && document.getPhysicalDocStruct() != null) {
+            removed += removeAll(document.getPhysicalDocStruct(), physicalNames);
+        }
+        return removed;
+    }
+
+    private int removeLogical(DocStruct element, DocStruct anchor, DocStruct top) {
+        Set<String> names;
+        if (element == top) {
+            names = topNames;
+        } else if (element == anchor) {
+            names = anchorNames;
+        } else {
+            names = otherLogicalNames;
+        }
+        int removed = remove(element, names);
+        // other elements than anchor and top are only visited for ALL_LOGICAL
+        if (element == anchor || !otherLogicalNames.isEmpty()) {
+            List<DocStruct> children = element.getAllChildren();
+            if (children != null) {
+                for (DocStruct child : children) {
+                    removed += removeLogical(child, anchor, top);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static int removeAll(DocStruct element, Set<String> names) {
+        int removed = remove(element, names);
+        List<DocStruct> children = element.getAllChildren();
+        if (children != null) {
+            for (DocStruct child : children) {
+                removed += removeAll(child, names);
+            }
+        }
+        return removed;
+    }
+
+    private static int remove(DocStruct element, Set<String> names) {
+        List<? extends Metadata> metadata = element.getAllMetadata();
+        if (names.isEmpty() || metadata == null || metadata.isEmpty()) {
+            return 0;
+        }
+        List<Metadata> matching = new ArrayList<>();
+        for (Metadata md : metadata) {
+            if (md.getType() != null && names.contains(md.getType().getName())) {
+                matching.add(md);
+            }
+        }
+        for (Metadata md : matching) {
+            element.removeMetadata(md);
+        }
+        if (!matching.isEmpty()) {
+            log.trace("Removed {} metadata from {}", matching.size(), element.getType().getName());
+        }
+        return matching.size();
+    }
+}
@@ -0,0 +1,296 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Removes metadata from the logical top element of a Goobi METS file without loading the document into memory.
+ *
+ * The file is read twice with StAX: the first pass finds the dmdSec of the logical top element in the logical structMap, the second pass copies
+ * the file into a temporary file and drops the matching goobi:metadata elements of that dmdSec. The original file is replaced atomically and
+ * only if something was removed. Like Goobi workflow, the previous file is kept as backup meta.xml.1 and older backups are shifted to
+ * meta.xml.2 up to the configured number. The temporary file gets the permissions, owner and group of the original file and is written to
+ * disk before it replaces the original file.
+ */
+@Log4j2
+public class MetsMetadataFilter {
+
+    public static final String METS_NAMESPACE = "http://www.loc.gov/METS/";
+    public static final String GOOBI_NAMESPACE = "http://meta.goobi.org/v1.5.1/";
+
+    private static final QName DMDSEC = new QName(METS_NAMESPACE, "dmdSec");
+    private static final QName ATTRIBUTE_ID = new QName("ID");
+    private static final QName ATTRIBUTE_TYPE = new QName("TYPE");
+    private static final QName ATTRIBUTE_DMDID = new QName("DMDID");
+    private static final QName ATTRIBUTE_NAME = new QName("name");
+    private static final QName ATTRIBUTE_METADATA_TYPE = new QName("type");
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+    /** number of rotating backups of the METS file, 0 if no backup is created */
+    private final int numberOfBackups;
+
+    public MetsMetadataFilter() {
+        this(0);
+    }
+
+    /**
+     * @param numberOfBackups number of rotating backups of the METS file, 0 if no backup is created
+     */
+    public MetsMetadataFilter(int numberOfBackups) {
+        this.numberOfBackups = Math.max(0, numberOfBackups);
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Remove all simple metadata with one of the given names from the logical top element. If the top element is an anchor, its first child is
+     * used instead.
+     *
+     * @param metsFile the METS file to change
+     * @param metadataNames internal names of the metadata types to remove
+     * @param isAnchorType tells if a structure type of the logical structMap is an anchor type
+     * @return number of removed metadata, the file was not changed if this is 0
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public int removeMetadata(Path metsFile, Set<String> metadataNames, Predicate<String> isAnchorType) throws IOException, XMLStreamException {
+        String dmdId = findLogicalTopDmdId(metsFile, isAnchorType);
+        if (dmdId == null) {
+            log.debug("No dmdSec found for the logical top element in {}", metsFile);
+            return 0;
+        }
+
+        Path tempFile = Files.createTempFile(metsFile.getParent(), metsFile.getFileName().toString(), ".tmp");
+        int removed = 0;
+        try {
+            try (InputStream in = Files.newInputStream(metsFile);
+                    FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                removed = copyWithoutMetadata(in, out, dmdId, metadataNames);
+                out.flush();
+                if (removed > 0) {
+                    // the new content is on disk before it replaces the original file
+                    channel.force(true);
+                }
+            }
+            if (removed > 0) {
+                copyPermissions(metsFile, tempFile);
+                createBackup(metsFile);
+                Files.move(tempFile, metsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return removed;
+    }
+
+    /**
+     * Give the temporary file the permissions, the owner and the group of the original file. It is created readable for its owner only.
+     */
+    static void copyPermissions(Path original, Path copy) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(copy, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            // no POSIX file system
+            return;
+        }
+        PosixFileAttributes attributes = Files.readAttributes(original, PosixFileAttributes.class);
+        view.setPermissions(attributes.permissions());
+        try {
+            view.setGroup(attributes.group());
+        } catch (IOException e) {
+            // the user is no member of the group
+            log.debug("Cannot change the group of {}", copy, e);
+        }
+        try {
+            view.setOwner(attributes.owner());
+        } catch (IOException e) {
+            // changing the owner to another user needs the rights of the super user
+            log.debug("Cannot change the owner of {}", copy, e);
+        }
+    }
+
+    /**
+     * Rotate the backups of the METS file and copy the current file into the first backup
+     */
+    void createBackup(Path metsFile) throws IOException {
+        if (numberOfBackups == 0) {
+            return;
+        }
+        String name = metsFile.getFileName().toString();
+        Files.deleteIfExists(metsFile.resolveSibling(name + "." + numberOfBackups));
+        for (int i = numberOfBackups - 1; i >= 1; i--) {
+            Path backup = metsFile.resolveSibling(name + "." + i);
+            if (Files.exists(backup)) {
+                Files.move(backup, metsFile.resolveSibling(name + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.copy(metsFile, metsFile.resolveSibling(name + ".1"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    /**
+     * Find the DMDID of the logical top element
+     */
+    String findLogicalTopDmdId(Path metsFile, Predicate<String> isAnchorType) throws IOException, XMLStreamException {
+        try (InputStream in = Files.newInputStream(metsFile)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                boolean inLogicalStructMap = false;
+                int divDepth = 0;
+                String topType = null;
+                String topDmdId = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamReader.START_ELEMENT && METS_NAMESPACE.equals(reader.getNamespaceURI())) {
+                        String name = reader.getLocalName();
+                        if ("structMap".equals(name)) {
+                            inLogicalStructMap = "LOGICAL".equals(reader.getAttributeValue(null, "TYPE"));
+                        } else if (inLogicalStructMap && "div".equals(name)) {
+                            divDepth++;
+                            if (divDepth == 1) {
+                                topType = reader.getAttributeValue(null, ATTRIBUTE_TYPE.getLocalPart());
+                                topDmdId = reader.getAttributeValue(null, ATTRIBUTE_DMDID.getLocalPart());
+                                if (topType == null || !isAnchorType.test(topType)) {
+                                    return topDmdId;
+                                }
+                            } else if (divDepth == 2) {
+                                // first child of an anchor
+                                return reader.getAttributeValue(null, ATTRIBUTE_DMDID.getLocalPart());
+                            }
+                        }
+                    } else if (event == XMLStreamReader.END_ELEMENT && inLogicalStructMap && METS_NAMESPACE.equals(reader.getNamespaceURI())) {
+                        if ("div".equals(reader.getLocalName())) {
+                            divDepth--;
+                        } else if ("structMap".equals(reader.getLocalName())) {
+                            // anchor without children
+                            return topDmdId;
+                        }
+                    }
+                }
+                return topDmdId;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private int copyWithoutMetadata(InputStream in, OutputStream out, String dmdId, Set<String> metadataNames) throws XMLStreamException {
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = null;
+        int removed = 0;
+        try {
+            boolean inDmdSec = false;
+            int depth = 0;
+            // depth of the goobi:goobi element within the selected dmdSec
+            int goobiDepth = -1;
+            // depth of the element that is currently skipped
+            int skipDepth = -1;
+            // whitespace before an element is only written, if the element is kept
+            List<XMLEvent> pendingWhitespace = new ArrayList<>();
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (writer == null) {
+                    String encoding = event.isStartDocument() ? ((StartDocument) event).getCharacterEncodingScheme() : null;
+                    writer = outputFactory.createXMLEventWriter(out, encoding == null ? "UTF-8" : encoding);
+                }
+                if (event.isStartElement()) {
+                    depth++;
+                    StartElement start = event.asStartElement();
+                    if (skipDepth == -1 && inDmdSec && goobiDepth == depth - 1 && isMatchingMetadata(start, metadataNames)) {
+                        skipDepth = depth;
+                        pendingWhitespace.clear();
+                        removed++;
+                    } else if (isElement(start, METS_NAMESPACE, "dmdSec")) {
+                        Attribute id = start.getAttributeByName(ATTRIBUTE_ID);
+                        inDmdSec = id != null && dmdId.equals(id.getValue());
+                    } else if (inDmdSec && isElement(start, GOOBI_NAMESPACE, "goobi")) {
+                        goobiDepth = depth;
+                    }
+                } else if (event.isEndElement()) {
+                    depth--;
+                    if (skipDepth != -1) {
+                        if (depth < skipDepth) {
+                            skipDepth = -1;
+                        }
+                        continue;
+                    }
+                    if (event.asEndElement().getName().equals(DMDSEC)) {
+                        inDmdSec = false;
+                        goobiDepth = -1;
+                    } else if (depth < goobiDepth) {
+                        goobiDepth = -1;
+                    }
+                } else if (event.isCharacters() && event.asCharacters().isWhiteSpace() && skipDepth == -1) {
+                    pendingWhitespace.add(event);
+                    continue;
+                }
+                if (skipDepth != -1) {
+                    continue;
+                }
+                for (XMLEvent whitespace : pendingWhitespace) {
+                    writer.add(whitespace);
+                }
+                pendingWhitespace.clear();
+                writer.add(event);
+            }
+            if (writer != null) {
+                writer.flush();
+            }
+        } finally {
+            reader.close();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        return removed;
+    }
+
+    private static boolean isMatchingMetadata(StartElement start, Set<String> metadataNames) {
+        if (!isElement(start, GOOBI_NAMESPACE, "metadata")) {
+            return false;
+        }
+        // persons, corporates and groups are not simple metadata
+        Attribute type = start.getAttributeByName(ATTRIBUTE_METADATA_TYPE);
+        if (type != null && !type.getValue().isEmpty()) {
+            return false;
+        }
+        Attribute name = start.getAttributeByName(ATTRIBUTE_NAME);
+        return name != null && metadataNames.contains(name.getValue());
+    }
+
+    private static boolean isElement(StartElement start, String namespace, String localName) {
+        QName name = start.getName();
+        return localName.equals(name.getLocalPart()) && namespace.equals(name.getNamespaceURI());
+    }
+}
@@ -0,0 +1,555 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import lombok.Getter;
+
+/**
+ * Deletes directory trees on the local file system with a configurable degree of parallelism.
+ *
+ * Each tree is walked once. Regular files are unlinked in batches by fork-join tasks, sub directories are processed as separate tasks and every
+ * directory is removed as soon as all of its children are gone. Directories are read lazily, so the memory usage is bounded independent of
+ * the number of entries. Symbolic links are deleted, never followed. Optionally all entries are deleted relative to the handle of their open
+ * directory.
+ *
+ * If a task fails, the tasks of its directory that did not start yet are cancelled and the running ones are joined before the error is thrown,
+ * so nothing is deleted anymore once a deletion has reported its failure.
+ */
+public class ParallelDirectoryDeleter implements AutoCloseable {
+
+    /** number of files unlinked by a single task */
+    private static final int FILE_BATCH_SIZE = 64;
+
+    /** number of forked tasks per directory that are not joined yet, this bounds the memory used for huge directories */
+    private static final int MAX_PENDING_TASKS = 16;
+
+    @Getter
+    private final int parallelism;
+
+    /** delete relative to open directory handles, if the file system supports it */
+    @Getter
+    private final boolean relative;
+
+    private final ForkJoinPool pool;
+
+    public ParallelDirectoryDeleter(int parallelism) {
+        this(parallelism, false);
+    }
+
+    /**
+     * @param parallelism number of threads
+     * @param relative if true, each entry is deleted relative to the open handle of its directory (openat/unlinkat) instead of by its absolute
+     *            path. This avoids the lookup of the full path for every file and a directory that is replaced by a symbolic link in the meantime
+     *            is never followed. File systems without {@link SecureDirectoryStream} use the absolute paths.
+     */
+    public ParallelDirectoryDeleter(int parallelism, boolean relative) {
+        this.parallelism = Math.max(1, parallelism);
+        this.relative = relative;
+        pool = new ForkJoinPool(this.parallelism);
+    }
+
+    /**
+     * Delete the given directory including all of its content. Nothing happens, if the directory does not exist.
+     *
+     * @param directory the directory to delete
+     * @throws IOException if a file or directory could not be deleted
+     */
+    public void deleteDir(Path directory) throws IOException {
+        deleteDir(directory, new DeletionCounter());
+    }
+
+    /**
+     * Delete the given directory including all of its content and count the removed files. Nothing happens, if the directory does not exist.
+     *
+     * @param directory the directory to delete
+     * @param counter counts the removed files and their size
+     * @throws IOException if a file or directory could not be deleted
+     */
+    public void deleteDir(Path directory, DeletionCounter counter) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            if (relative) {
+                Path parent = directory.toAbsolutePath().getParent();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent)) {
+                    if (stream instanceof SecureDirectoryStream) {
+                        pool.invoke(new RelativeDeleteDirectoryTask((SecureDirectoryStream<Path>) stream, directory.getFileName(), counter));
+                        return;
+                    }
+                }
+            }
+            pool.invoke(new DeleteDirectoryTask(directory, counter));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Delete all files of the given directory that are accepted by the filter. Sub directories are kept. The directory is read lazily, so the
+     * deletion starts with the first entry and the memory usage does not depend on the number of files.
+     *
+     * @param directory the directory to clean up
+     * @param filter selects the files to delete
+     * @param counter counts the removed files and their size
+     * @throws IOException if a file could not be deleted
+     */
+    public void deleteFiles(Path directory, DirectoryStream.Filter<? super Path> filter, DeletionCounter counter) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            if (relative) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    if (stream instanceof SecureDirectoryStream) {
+                        pool.invoke(new RelativeDeleteContentTask((SecureDirectoryStream<Path>) stream, filter, counter));
+                        return;
+                    }
+                }
+            }
+            pool.invoke(new DeleteContentTask(directory, filter, counter));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Delete the files of the given directory tree that are selected by the filter in a single pass. Sub directories that are empty afterwards are
+     * removed, the directory itself is kept. The relative deletion is not used here.
+     *
+     * @param directory the directory to clean up
+     * @param filter selects the files to delete by their path relative to the directory
+     * @param counter counts the removed files and their size
+     * @throws IOException if a file could not be deleted
+     */
+    public void deleteMatching(Path directory, ContentFilter filter, DeletionCounter counter) throws IOException {
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try {
+            pool.invoke(new DeleteMatchingTask(directory, directory, filter, counter));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Shut down the threads and wait until all tasks are finished
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+        boolean interrupted = false;
+        while (!pool.isTerminated()) {
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // the running deletions are finished anyway
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read the directory lazily and delete its entries with forked tasks. At most {@link #MAX_PENDING_TASKS} tasks are kept per directory, the
+     * oldest one is joined before a new one is forked.
+     *
+     * @param directory the directory to read
+     * @param fileFilter selects the files to delete
+     * @param directoryTask creates the task for a sub directory, sub directories are kept if this is null
+     * @param counter counts the removed files
+     */
+    private static void deleteEntries(Path directory, DirectoryStream.Filter<? super Path> fileFilter, Function<Path, RecursiveAction> directoryTask,
+            DeletionCounter counter) {
+        Deque<RecursiveAction> pending = new ArrayDeque<>();
+        List<Path> files = new ArrayList<>(FILE_BATCH_SIZE);
+        List<Long> sizes = new ArrayList<>(FILE_BATCH_SIZE);
+        RuntimeException failure = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                BasicFileAttributes attributes = readAttributes(entry);
+                if (attributes == null) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (directoryTask != null) {
+                        fork(pending, directoryTask.apply(entry));
+                    }
+                } else if (fileFilter.accept(entry)) {
+                    files.add(entry);
+                    sizes.add(attributes.size());
+                    if (files.size() == FILE_BATCH_SIZE) {
+                        fork(pending, new DeleteFilesTask(files, sizes, counter));
+                        files = new ArrayList<>(FILE_BATCH_SIZE);
+                        sizes = new ArrayList<>(FILE_BATCH_SIZE);
+                    }
+                }
+            }
+            if (!files.isEmpty()) {
+                fork(pending, new DeleteFilesTask(files, sizes, counter));
+            }
+        } catch (NoSuchFileException e) {
+            // already removed by someone else
+        } catch (IOException e) {
+            failure = new UncheckedIOException(e);
+        } catch (DirectoryIteratorException e) {
+            failure = new UncheckedIOException(e.getCause());
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        joinAll(pending, failure);
+    }
+
+    /**
+     * Same as {@link #deleteEntries(Path, DirectoryStream.Filter, Function, DeletionCounter)}, but all entries are accessed by their name
+     * relative to the open directory
+     */
+    private static void deleteEntriesRelative(SecureDirectoryStream<Path> directory, DirectoryStream.Filter<? super Path> filter,
+            boolean includeDirectories, DeletionCounter counter) {
+        Deque<RecursiveAction> pending = new ArrayDeque<>();
+        List<Path> names = new ArrayList<>(FILE_BATCH_SIZE);
+        List<Long> sizes = new ArrayList<>(FILE_BATCH_SIZE);
+        RuntimeException failure = null;
+        try {
+            for (Path entry : directory) {
+                if (!filter.accept(entry)) {
+                    continue;
+                }
+                Path name = entry.getFileName();
+                BasicFileAttributes attributes = readAttributes(directory, name);
+                if (attributes == null) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (includeDirectories) {
+                        fork(pending, new RelativeDeleteDirectoryTask(directory, name, counter));
+                    }
+                } else {
+                    names.add(name);
+                    sizes.add(attributes.size());
+                    if (names.size() == FILE_BATCH_SIZE) {
+                        fork(pending, new RelativeDeleteFilesTask(directory, names, sizes, counter));
+                        names = new ArrayList<>(FILE_BATCH_SIZE);
+                        sizes = new ArrayList<>(FILE_BATCH_SIZE);
+                    }
+                }
+            }
+            if (!names.isEmpty()) {
+                fork(pending, new RelativeDeleteFilesTask(directory, names, sizes, counter));
+            }
+        } catch (IOException e) {
+            failure = new UncheckedIOException(e);
+        } catch (DirectoryIteratorException e) {
+            failure = new UncheckedIOException(e.getCause());
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        joinAll(pending, failure);
+    }
+
+    private static void fork(Deque<RecursiveAction> pending, RecursiveAction task) {
+        task.fork();
+        pending.add(task);
+        if (pending.size() > MAX_PENDING_TASKS) {
+            pending.poll().join();
+        }
+    }
+
+    /**
+     * Join all pending tasks. After a failure the tasks that did not start yet are cancelled, the running ones are joined and their errors are
+     * added to the first one.
+     *
+     * @param pending the forked tasks
+     * @param failure error of the directory itself, null if there was none
+     */
+    private static void joinAll(Deque<RecursiveAction> pending, RuntimeException failure) {
+        RuntimeException error = failure;
+        RecursiveAction task;
+        while ((task = pending.poll()) != null) {
+            if (error != null) {
+                task.cancel(false);
+            }
+            try {
+                task.join();
+            } catch (CancellationException e) {
+                // cancelled before it started
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                } else if (error != e) {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static boolean deleteIfExists(Path path) {
+        try {
+            DeletionRateLimiter.getInstance().acquireDeletes(1);
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            // removed in the meantime
+            return null;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(SecureDirectoryStream<Path> directory, Path name) throws IOException {
+        DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+        try {
+            return directory.getFileAttributeView(name, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).readAttributes();
+        } catch (NoSuchFileException e) {
+            // removed in the meantime
+            return null;
+        }
+    }
+
+    private static class DeleteDirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -1842796472930164017L;
+
+        private final transient Path directory;
+
+        private final transient DeletionCounter counter;
+
+        DeleteDirectoryTask(Path directory, DeletionCounter counter) {
+            this.directory = directory;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            deleteEntries(directory, entry -> true, entry -> new DeleteDirectoryTask(entry, counter), counter);
+            // all children are gone, remove the directory itself
+            deleteIfExists(directory);
+        }
+    }
+
+    private static class DeleteMatchingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -1318127366934442561L;
+
+        private final transient Path root;
+
+        private final transient Path directory;
+
+        private final transient ContentFilter filter;
+
+        private final transient DeletionCounter counter;
+
+        DeleteMatchingTask(Path root, Path directory, ContentFilter filter, DeletionCounter counter) {
+            this.root = root;
+            this.directory = directory;
+            this.filter = filter;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            deleteEntries(directory, entry -> filter.matches(root.relativize(entry)), entry -> new DeleteMatchingTask(root, entry, filter, counter),
+                    counter);
+            if (!directory.equals(root)) {
+                try {
+                    // prune the directory, if nothing was kept
+                    DeletionRateLimiter.getInstance().acquireDeletes(1);
+                    Files.deleteIfExists(directory);
+                } catch (DirectoryNotEmptyException e) {
+                    // some files were kept
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static class DeleteContentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 6127760233391834750L;
+
+        private final transient Path directory;
+
+        private final transient DirectoryStream.Filter<? super Path> filter;
+
+        private final transient DeletionCounter counter;
+
+        DeleteContentTask(Path directory, DirectoryStream.Filter<? super Path> filter, DeletionCounter counter) {
+            this.directory = directory;
+            this.filter = filter;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            deleteEntries(directory, filter, null, counter);
+        }
+    }
+
+    private static class DeleteFilesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 4021394870192877321L;
+
+        private final transient List<Path> files;
+
+        private final transient List<Long> sizes;
+
+        private final transient DeletionCounter counter;
+
+        DeleteFilesTask(List<Path> files, List<Long> sizes, DeletionCounter counter) {
+            this.files = files;
+            this.sizes = sizes;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < files.size(); i++) {
+                if (deleteIfExists(files.get(i))) {
+                    counter.addFile(sizes.get(i));
+                }
+            }
+        }
+    }
+
+    private static class RelativeDeleteDirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -5226011733263407196L;
+
+        private final transient SecureDirectoryStream<Path> parent;
+
+        private final transient Path name;
+
+        private final transient DeletionCounter counter;
+
+        RelativeDeleteDirectoryTask(SecureDirectoryStream<Path> parent, Path name, DeletionCounter counter) {
+            this.parent = parent;
+            this.name = name;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                SecureDirectoryStream<Path> directory;
+                try {
+                    directory = parent.newDirectoryStream(name, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    // already removed by someone else
+                    return;
+                } catch (FileSystemException e) {
+                    BasicFileAttributes attributes = readAttributes(parent, name);
+                    if (attributes != null && attributes.isSymbolicLink()) {
+                        // replaced by a link since it was listed, remove the link only
+                        DeletionRateLimiter.getInstance().acquireDeletes(1);
+                        parent.deleteFile(name);
+                        return;
+                    }
+                    throw e;
+                }
+                try {
+                    deleteEntriesRelative(directory, entry -> true, true, counter);
+                } finally {
+                    directory.close();
+                }
+                // all children are gone, remove the directory itself
+                DeletionRateLimiter.getInstance().acquireDeletes(1);
+                parent.deleteDirectory(name);
+            } catch (NoSuchFileException e) {
+                // already removed by someone else
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class RelativeDeleteContentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 2933713432780117162L;
+
+        private final transient SecureDirectoryStream<Path> directory;
+
+        private final transient DirectoryStream.Filter<? super Path> filter;
+
+        private final transient DeletionCounter counter;
+
+        RelativeDeleteContentTask(SecureDirectoryStream<Path> directory, DirectoryStream.Filter<? super Path> filter, DeletionCounter counter) {
+            this.directory = directory;
+            this.filter = filter;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            deleteEntriesRelative(directory, filter, false, counter);
+        }
+    }
+
+    private static class RelativeDeleteFilesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -7703949409440411208L;
+
+        private final transient SecureDirectoryStream<Path> directory;
+
+        private final transient List<Path> names;
+
+        private final transient List<Long> sizes;
+
+        private final transient DeletionCounter counter;
+
+        RelativeDeleteFilesTask(SecureDirectoryStream<Path> directory, List<Path> names, List<Long> sizes, DeletionCounter counter) {
+            this.directory = directory;
+            this.names = names;
+            this.sizes = sizes;
+            this.counter = counter;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < names.size(); i++) {
+                try {
+                    DeletionRateLimiter.getInstance().acquireDeletes(1);
+                    directory.deleteFile(names.get(i));
+                    counter.addFile(sizes.get(i));
+                } catch (NoSuchFileException e) {
+                    // already removed by someone else
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
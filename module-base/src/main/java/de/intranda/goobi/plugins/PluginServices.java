@@ -0,0 +1,71 @@
+package de.intranda.goobi.plugins;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+
+import de.sub.goobi.config.ConfigPlugins;
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Background services shared by all tasks of the plugin. They are started once per JVM when the plugin is loaded, independent of the
+ * configuration of a single project or task. Their settings are read from the element global of the plugin configuration.
+ */
+@Log4j2
+public final class PluginServices {
+
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private PluginServices() {
+    }
+
+    /**
+     * Start the services, further calls do nothing
+     *
+     * @param pluginTitle title of the plugin
+     */
+    public static void start(String pluginTitle) {
+        if (!STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            HierarchicalConfiguration global = getGlobalConfiguration(pluginTitle);
+            // the limits are shared by all deletions of the JVM, so they are not part of the configuration of a task
+            DeletionRateLimiter.getInstance()
+                    .configure(global.getDouble("/rateLimit/@deletesPerSecond", 0), global.getDouble("/rateLimit/@metadataOperationsPerSecond", 0));
+            if (!ConfigurationHelper.getInstance().useS3()) {
+                // entries left over from a restart are deleted without waiting for the next task that uses the trash area
+                TrashReaper.startIfNotEmpty();
+                // the size index measures the local metadata folder, it is started by the watcher as well
+                if (global.getBoolean("/sizeIndex", false)) {
+                    ProcessSizeIndex.start();
+                }
+                // the watcher measures the local metadata folder and uses the deletion tasks of all projects
+                DiskPressureWatcher.startIfEnabled(pluginTitle, global.getDouble("/diskPressureWatcher/@highWaterMark", 0),
+                        global.getDouble("/diskPressureWatcher/@lowWaterMark", 0), global.getLong("/diskPressureWatcher/@intervalMinutes", 5),
+                        new LinkedHashSet<>(Arrays.asList(global.getStringArray("/diskPressureWatcher/target"))));
+            }
+            // asynchronous deletions that were running during a restart, the database is queried outside of the plugin loader
+            DeletionProgressRegistry.getInstance().submit(() -> DeleteContentPlugin.resumeAsynchronousDeletions(pluginTitle));
+        } catch (RuntimeException e) {
+            log.error("Cannot start the background services of plugin {}", pluginTitle, e);
+        }
+    }
+
+    /**
+     * @param pluginTitle title of the plugin
+     * @return the element global of the plugin configuration, an empty configuration if it is missing
+     */
+    static HierarchicalConfiguration getGlobalConfiguration(String pluginTitle) {
+        XMLConfiguration config = ConfigPlugins.getPluginConfig(pluginTitle);
+        config.setExpressionEngine(new XPathExpressionEngine());
+        List<HierarchicalConfiguration> sections = config.configurationsAt("/global");
+        return sections.isEmpty() ? new HierarchicalConfiguration() : sections.get(0);
+    }
+}
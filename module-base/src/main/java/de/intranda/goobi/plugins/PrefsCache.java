@@ -0,0 +1,168 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import ugh.dl.MetadataType;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+
+/**
+ * JVM-wide cache of parsed rulesets. Parsing a large ruleset often takes longer than the removal of the metadata itself.
+ *
+ * The entries are kept per ruleset file and are parsed again as soon as the modification date of the file changes. The number of cached
+ * rulesets is limited, the least recently used one is removed first. Tasks that request the same ruleset at the same time wait for a single
+ * parse.
+ */
+@Log4j2
+public class PrefsCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 10;
+
+    private static PrefsCache instance;
+
+    /**
+     * Parses a ruleset file
+     */
+    @FunctionalInterface
+    interface PrefsLoader {
+        Prefs load(Path rulesetFile) throws PreferencesException;
+    }
+
+    private final PrefsLoader loader;
+
+    // access ordered, guarded by this
+    private final Map<Path, CachedPrefs> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    public static synchronized PrefsCache getInstance() {
+        if (instance == null) {
+            instance = new PrefsCache(DEFAULT_MAX_ENTRIES, rulesetFile -> {
+                Prefs prefs = new Prefs();
+                prefs.loadPrefs(rulesetFile.toString());
+                return prefs;
+            });
+        }
+        return instance;
+    }
+
+    PrefsCache(int maxEntries, PrefsLoader loader) {
+        this.loader = loader;
+        entries = new LinkedHashMap<Path, CachedPrefs>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedPrefs> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the parsed ruleset
+     *
+     * @param rulesetFile path of the ruleset file
+     * @return the cached ruleset
+     * @throws PreferencesException if the ruleset cannot be parsed
+     */
+    public CachedPrefs get(Path rulesetFile) throws PreferencesException {
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(rulesetFile).toMillis();
+        } catch (IOException e) {
+            // not cached, the loader reports the error
+            log.debug("Cannot read modification date of ruleset {}", rulesetFile, e);
+            CachedPrefs uncached = new CachedPrefs(rulesetFile, -1);
+            uncached.load(loader);
+            return uncached;
+        }
+
+        CachedPrefs entry;
+        synchronized (this) {
+            entry = entries.get(rulesetFile);
+            if (entry == null || entry.modified != modified) {
+                entry = new CachedPrefs(rulesetFile, modified);
+                entries.put(rulesetFile, entry);
+            } else {
+                hits.incrementAndGet();
+            }
+        }
+        try {
+            entry.load(loader);
+        } catch (PreferencesException | RuntimeException e) {
+            synchronized (this) {
+                entries.remove(rulesetFile, entry);
+            }
+            throw e;
+        }
+        return entry;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of parsed rulesets
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A parsed ruleset with the metadata types that were looked up so far
+     */
+    public class CachedPrefs {
+
+        @Getter
+        private final Path rulesetFile;
+
+        private final long modified;
+
+        private volatile Prefs prefs;
+
+        private final Map<String, Optional<MetadataType>> metadataTypes = new ConcurrentHashMap<>();
+
+        CachedPrefs(Path rulesetFile, long modified) {
+            this.rulesetFile = rulesetFile;
+            this.modified = modified;
+        }
+
+        private synchronized void load(PrefsLoader prefsLoader) throws PreferencesException {
+            if (prefs == null) {
+                long start = System.currentTimeMillis();
+                prefs = prefsLoader.load(rulesetFile);
+                loads.incrementAndGet();
+                log.debug("Parsed ruleset {} in {} ms", rulesetFile, System.currentTimeMillis() - start);
+            }
+        }
+
+        public Prefs getPrefs() {
+            return prefs;
+        }
+
+        /**
+         * Get a metadata type of the ruleset, the result is cached
+         *
+         * @param name internal name of the type
+         * @return the type or null, if the ruleset does not contain it
+         */
+        public MetadataType getMetadataType(String name) {
+            return metadataTypes.computeIfAbsent(name, n -> Optional.ofNullable(prefs.getMetadataTypeByName(n))).orElse(null);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.sub.goobi.helper.StorageProvider;
+
+/**
+ * Names of the entries of the process folder and its images/ and ocr/ sub folders, read with one listing per folder at the start of a run.
+ *
+ * The deletion targets are resolved against this snapshot, so a configured folder that does not exist costs no file system access and the
+ * type of an existing one is known without another check. Paths outside of the listed folders are checked with the StorageProvider.
+ */
+public class ProcessFolderSnapshot {
+
+    private final Path processFolder;
+
+    // listed folder -> names of its entries
+    private final Map<Path, Set<String>> listings = new HashMap<>();
+    // listed folder -> names of the entries that are directories
+    private final Map<Path, Set<String>> directories = new HashMap<>();
+
+    /**
+     * Read the process folder and the given sub folders, if they exist
+     *
+     * @param processFolder the process folder
+     * @param subFolders folders within the process folder to list as well, e.g. images/ and ocr/
+     * @return the snapshot
+     * @throws IOException
+     */
+    public static ProcessFolderSnapshot create(Path processFolder, Path... subFolders) throws IOException {
+        ProcessFolderSnapshot snapshot = new ProcessFolderSnapshot(processFolder.normalize());
+        Set<String> processEntries = snapshot.list(snapshot.processFolder);
+        for (Path subFolder : subFolders) {
+            Path folder = subFolder.normalize();
+            if (snapshot.processFolder.equals(folder.getParent()) && !processEntries.contains(folder.getFileName().toString())) {
+                // missing folder, everything inside is missing as well
+                snapshot.listings.put(folder, Collections.emptySet());
+                snapshot.directories.put(folder, Collections.emptySet());
+            } else {
+                snapshot.list(folder);
+            }
+        }
+        return snapshot;
+    }
+
+    private ProcessFolderSnapshot(Path processFolder) {
+        this.processFolder = processFolder;
+    }
+
+    private Set<String> list(Path folder) throws IOException {
+        Set<String> names = new HashSet<>();
+        List<Path> entries = new ArrayList<>();
+        DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+                entries.add(entry);
+            }
+        } catch (NoSuchFileException e) {
+            // nothing to delete
+        }
+        // the type of every entry is read once here instead of once per configured target
+        Set<String> folders = new HashSet<>();
+        DeletionRateLimiter.getInstance().acquireMetadataOperations(entries.size());
+        for (Path entry : entries) {
+            if (Files.isDirectory(entry)) {
+                folders.add(entry.getFileName().toString());
+            }
+        }
+        listings.put(folder, names);
+        directories.put(folder, folders);
+        return names;
+    }
+
+    /**
+     * Check if the given path exists
+     *
+     * @param path the path to check
+     * @return true, if the path exists or is outside of the listed folders and exists on the storage
+     */
+    public boolean exists(Path path) {
+        Path normalized = path.normalize();
+        if (normalized.equals(processFolder)) {
+            // an empty process folder has nothing to delete either
+            return !listings.get(processFolder).isEmpty();
+        }
+        Set<String> names = listings.get(normalized.getParent());
+        if (names == null) {
+            return StorageProvider.getInstance().isFileExists(normalized);
+        }
+        // the listing of a missing folder is empty
+        return names.contains(normalized.getFileName().toString());
+    }
+
+    /**
+     * Check if the given path is a directory
+     *
+     * @param path the path to check
+     * @return true, if the path is a directory according to the snapshot or is outside of the listed folders and is a directory on the storage
+     */
+    public boolean isDirectory(Path path) {
+        Path normalized = path.normalize();
+        if (normalized.equals(processFolder)) {
+            return exists(normalized);
+        }
+        Set<String> names = directories.get(normalized.getParent());
+        if (names == null) {
+            return StorageProvider.getInstance().isDirectory(normalized);
+        }
+        return names.contains(normalized.getFileName().toString());
+    }
+}
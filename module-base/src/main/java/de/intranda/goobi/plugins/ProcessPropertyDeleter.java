@@ -0,0 +1,48 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import de.intranda.goobi.plugins.IdListTransaction.ConnectionProvider;
+import de.sub.goobi.persistence.managers.MySQLHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Deletes process properties directly in the property table.
+ *
+ * Deleting the properties one by one needs a round trip to the database for each property. Here all properties are deleted with one statement
+ * inside one transaction.
+ */
+@Log4j2
+public class ProcessPropertyDeleter {
+
+    private static final String DELETE_PROPERTIES = "DELETE FROM prozesseeigenschaften WHERE prozesseeigenschaftenID IN (%s)";
+
+    private final IdListTransaction transaction;
+
+    /**
+     * @return a deleter that uses the connection pool of Goobi workflow
+     */
+    public static ProcessPropertyDeleter getDefault() {
+        return new ProcessPropertyDeleter(() -> MySQLHelper.getInstance().getConnection());
+    }
+
+    public ProcessPropertyDeleter(ConnectionProvider connectionProvider) {
+        transaction = new IdListTransaction(connectionProvider);
+    }
+
+    /**
+     * Delete the given properties. Either all properties are deleted or none.
+     *
+     * @param propertyIds ids of the properties to delete
+     * @return number of deleted rows
+     * @throws SQLException
+     */
+    public int deleteProperties(List<Integer> propertyIds) throws SQLException {
+        int deleted = transaction.executeUpdate(DELETE_PROPERTIES, propertyIds);
+        if (deleted > 0) {
+            log.debug("Deleted {} process properties", deleted);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,793 @@
+package de.intranda.goobi.plugins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Sizes of the content folders of all processes within the metadata folder, grouped by folder type.
+ *
+ * Each process folder is split into units: the folders within images/, ocr/ and thumbs/ and the folders export/ and import/. The index is
+ * filled by a crawler that measures a limited number of processes at a time, and it is updated by the deletion for the folders it has removed.
+ * The type of a unit is found by the folder names configured in Goobi, e.g. master_{processtitle}_media for the master images.
+ * The crawler only measures units whose modification time has changed since the last pass, units containing sub folders are always measured.
+ * Files that are overwritten in place do not change the modification time of their folder and are found when the unit changes otherwise. A
+ * measurement of the crawler is dropped if the deletion updated the process meanwhile.
+ *
+ * The index is saved as compressed binary file within the metadata folder and loaded again on start. For each folder type the processes are
+ * kept in order of their size, so selecting the largest processes does not touch the file system.
+ */
+@Log4j2
+public class ProcessSizeIndex {
+
+    public static final String MASTER = "master";
+    public static final String MEDIA = "media";
+    public static final String SOURCE = "source";
+    /** other folders within images/, e.g. additional or fallback folders */
+    public static final String IMAGES = "images";
+    public static final String THUMBS = "thumbs";
+    /** prefix for the folders within ocr/, e.g. ocr/alto */
+    public static final String OCR_PREFIX = "ocr/";
+    public static final String EXPORT = "export";
+    public static final String IMPORT = "import";
+    /** ranking of the processes by the bytes of all units */
+    public static final String TOTAL = "total";
+
+    public static final String INDEX_FILE_NAME = ".process-sizes.idx";
+
+    /** processes measured by the crawler on each run */
+    static final int CRAWL_BATCH_SIZE = 500;
+
+    private static final long CRAWL_INTERVAL_SECONDS = 60;
+
+    private static final int FILE_MAGIC = 0x50534958;
+    private static final int FILE_VERSION = 1;
+
+    private static final String IMAGES_FOLDER = "images";
+    private static final String OCR_FOLDER = "ocr";
+
+    private static ProcessSizeIndex instance;
+
+    @Getter
+    private final Path metadataFolder;
+
+    private final Path indexFile;
+
+    // patterns of the configured folder names and their type, the master folder comes first as its name contains the name of the media folder
+    private final Map<Pattern, String> folderTypes = new LinkedHashMap<>();
+
+    private final Map<Integer, ProcessSizes> processes = new ConcurrentHashMap<>();
+
+    // processes ordered by size for each folder type, guarded by the index
+    private final Map<String, NavigableSet<RankEntry>> rankings = new ConcurrentHashMap<>();
+
+    // crawling and saving take long, they use own locks so the deletion can update the index meanwhile
+    private final Object crawlLock = new Object();
+    private final Object saveLock = new Object();
+
+    // position of the crawler within the current pass over all process folders
+    private Iterator<Integer> crawlPosition = Collections.emptyIterator();
+
+    private volatile boolean modified;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Get the index of the metadata folder, it is loaded from its file on the first call
+     *
+     * @return the index
+     */
+    public static synchronized ProcessSizeIndex getInstance() {
+        if (instance == null) {
+            Path metadataFolder = Paths.get(ConfigurationHelper.getInstance().getMetadataFolder());
+            instance = new ProcessSizeIndex(metadataFolder, metadataFolder.resolve(INDEX_FILE_NAME));
+            instance.load();
+        }
+        return instance;
+    }
+
+    /**
+     * Get the index, if the crawler was started
+     *
+     * @return the index or null
+     */
+    public static synchronized ProcessSizeIndex getRunningInstance() {
+        return instance != null && instance.scheduler != null ? instance : null;
+    }
+
+    /**
+     * Load the index and start the crawler, this happens only once per JVM
+     *
+     * @return the index
+     */
+    public static synchronized ProcessSizeIndex start() {
+        ProcessSizeIndex index = getInstance();
+        if (index.scheduler == null) {
+            index.startCrawler();
+        }
+        return index;
+    }
+
+    ProcessSizeIndex(Path metadataFolder, Path indexFile) {
+        this(metadataFolder, indexFile, getConfiguredFolderNames());
+    }
+
+    /**
+     * @param folderNames configured names of the units relative to the process folder with their type, e.g. images/master_{processtitle}_media
+     */
+    ProcessSizeIndex(Path metadataFolder, Path indexFile, Map<String, String> folderNames) {
+        this.metadataFolder = metadataFolder.toAbsolutePath().normalize();
+        this.indexFile = indexFile;
+        for (Map.Entry<String, String> folderName : folderNames.entrySet()) {
+            folderTypes.put(toPattern(folderName.getKey()), folderName.getValue());
+        }
+    }
+
+    /**
+     * Get the names of the image and ocr folders from the configuration of Goobi
+     */
+    static Map<String, String> getConfiguredFolderNames() {
+        ConfigurationHelper config = ConfigurationHelper.getInstance();
+        Map<String, String> folderNames = new LinkedHashMap<>();
+        folderNames.put(IMAGES_FOLDER + "/" + config.getProcessImagesMasterDirectoryName(), MASTER);
+        folderNames.put(IMAGES_FOLDER + "/" + config.getProcessImagesMainDirectoryName(), MEDIA);
+        folderNames.put(IMAGES_FOLDER + "/" + config.getProcessImagesSourceDirectoryName(), SOURCE);
+        folderNames.put(OCR_FOLDER + "/" + config.getProcessOcrAltoDirectoryName(), OCR_PREFIX + "alto");
+        folderNames.put(OCR_FOLDER + "/" + config.getProcessOcrPdfDirectoryName(), OCR_PREFIX + "pdf");
+        folderNames.put(OCR_FOLDER + "/" + config.getProcessOcrTxtDirectoryName(), OCR_PREFIX + "txt");
+        folderNames.put(OCR_FOLDER + "/" + config.getProcessOcrXmlDirectoryName(), OCR_PREFIX + "xml");
+        return folderNames;
+    }
+
+    /**
+     * Create a pattern for a folder name, the process title can be any text
+     */
+    private static Pattern toPattern(String folderName) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : folderName.split(Pattern.quote("{processtitle}"), -1)) {
+            if (regex.length() > 0) {
+                regex.append(".+");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private void startCrawler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "delete-content-size-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                crawl(CRAWL_BATCH_SIZE);
+                save();
+            } catch (IOException | RuntimeException e) {
+                log.error("Error while updating the size index {}", indexFile, e);
+            }
+        }, 0, CRAWL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        log.info("Size index crawler started for {}, {} processes loaded", metadataFolder, processes.size());
+    }
+
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Measure all units of a process again
+     *
+     * @param processId id of the process
+     * @return the new sizes, null if the process folder does not exist
+     * @throws IOException
+     */
+    public ProcessSizes refresh(int processId) throws IOException {
+        return measureProcess(processId, null, false);
+    }
+
+    /**
+     * Measure the units of a process again that are located within the given folder or contain it, e.g. after the folder was deleted. Nothing
+     * happens if the process is not indexed yet.
+     *
+     * @param processId id of the process
+     * @param folder a folder of the process
+     * @throws IOException
+     */
+    public void refreshFolder(int processId, Path folder) throws IOException {
+        Path processFolder = metadataFolder.resolve(String.valueOf(processId));
+        Path changed = processFolder.relativize(folder.toAbsolutePath().normalize());
+        while (true) {
+            ProcessSizes current = processes.get(processId);
+            if (current == null) {
+                return;
+            }
+            if (changed.toString().isEmpty()) {
+                refresh(processId);
+                return;
+            }
+            Map<String, UnitSize> units = new HashMap<>(current.getUnits());
+            for (String unit : current.getUnits().keySet()) {
+                if (isAffected(unit, changed)) {
+                    units.remove(unit);
+                }
+            }
+            // units that are new or still exist within the folder
+            for (Map.Entry<String, Path> unit : listUnits(processFolder).entrySet()) {
+                if (isAffected(unit.getKey(), changed)) {
+                    UnitSize size = measure(unit.getValue(), getFolderType(unit.getKey()));
+                    if (size != null) {
+                        units.put(unit.getKey(), size);
+                    }
+                }
+            }
+            if (replace(processId, current, new ProcessSizes(processId, units))) {
+                return;
+            }
+            // the crawler or another deletion stored new sizes in the meantime, the other units are taken from them
+            log.debug("Sizes of process {} were updated while the folder {} was measured", processId, changed);
+        }
+    }
+
+    private static boolean isAffected(String unit, Path changed) {
+        Path unitPath = Paths.get(unit);
+        return unitPath.startsWith(changed) || changed.startsWith(unitPath);
+    }
+
+    /**
+     * Measure the next processes of the current pass over the metadata folder. Units that were not modified since the last pass are skipped. A
+     * new pass is started when the last one is finished, processes that do not exist anymore are removed then.
+     *
+     * @param maxProcesses number of processes to measure
+     * @return number of measured processes
+     */
+    public int crawl(int maxProcesses) {
+        synchronized (crawlLock) {
+            if (!crawlPosition.hasNext()) {
+                List<Integer> ids = listProcessIds();
+                for (Integer processId : new ArrayList<>(processes.keySet())) {
+                    if (Collections.binarySearch(ids, processId) < 0) {
+                        update(processId, null);
+                    }
+                }
+                crawlPosition = ids.iterator();
+            }
+            int measured = 0;
+            while (measured < maxProcesses && crawlPosition.hasNext()) {
+                int processId = crawlPosition.next();
+                try {
+                    measureProcess(processId, processes.get(processId), true);
+                    measured++;
+                } catch (IOException e) {
+                    log.warn("Cannot measure process {}", processId, e);
+                }
+            }
+            return measured;
+        }
+    }
+
+    /**
+     * Measure the units of a process, units of the previous sizes with an unchanged modification time are kept. The crawler passes the sizes of
+     * the index as previous sizes, its result is dropped if the deletion replaced them during the measurement.
+     */
+    private ProcessSizes measureProcess(int processId, ProcessSizes previous, boolean crawling) throws IOException {
+        Path processFolder = metadataFolder.resolve(String.valueOf(processId));
+        if (!Files.isDirectory(processFolder)) {
+            if (crawling) {
+                replace(processId, previous, null);
+            } else {
+                update(processId, null);
+            }
+            return null;
+        }
+        Map<String, UnitSize> units = new HashMap<>();
+        for (Map.Entry<String, Path> unit : listUnits(processFolder).entrySet()) {
+            UnitSize old = previous == null ? null : previous.getUnits().get(unit.getKey());
+            UnitSize size;
+            if (old != null && !old.isNested() && old.getModified() == getModified(unit.getValue())) {
+                size = old;
+            } else {
+                size = measure(unit.getValue(), getFolderType(unit.getKey()));
+            }
+            if (size != null) {
+                units.put(unit.getKey(), size);
+            }
+        }
+        if (previous != null && units.equals(previous.getUnits())) {
+            return previous;
+        }
+        ProcessSizes sizes = new ProcessSizes(processId, units);
+        if (!crawling) {
+            update(processId, sizes);
+        } else if (!replace(processId, previous, sizes)) {
+            // the units were measured before the deletion updated them, the next pass measures them again
+            log.debug("Sizes of process {} were updated while it was measured", processId);
+            return processes.get(processId);
+        }
+        return sizes;
+    }
+
+    /**
+     * Replace the sizes of a process, if they are still the expected ones
+     *
+     * @param processId id of the process
+     * @param expected the sizes found before the process was measured, null if it was not indexed
+     * @param sizes the new sizes, null to remove the process
+     * @return true if the sizes were replaced
+     */
+    synchronized boolean replace(int processId, ProcessSizes expected, ProcessSizes sizes) {
+        if (processes.get(processId) != expected) {
+            return false;
+        }
+        update(processId, sizes);
+        return true;
+    }
+
+    /**
+     * Replace the sizes of a process and its position in the rankings
+     */
+    private synchronized void update(int processId, ProcessSizes sizes) {
+        ProcessSizes old = sizes == null ? processes.remove(processId) : processes.put(processId, sizes);
+        if (old != null) {
+            for (Map.Entry<String, Long> entry : old.getBytesByType().entrySet()) {
+                rankings.get(entry.getKey()).remove(new RankEntry(processId, entry.getValue()));
+            }
+        }
+        if (sizes != null) {
+            for (Map.Entry<String, Long> entry : sizes.getBytesByType().entrySet()) {
+                rankings.computeIfAbsent(entry.getKey(), type -> new ConcurrentSkipListSet<>()).add(new RankEntry(processId, entry.getValue()));
+            }
+        }
+        modified = true;
+    }
+
+    /**
+     * Get the processes with the most bytes in their content folders
+     *
+     * @param count maximum number of processes
+     * @return the processes, largest first
+     */
+    public List<ProcessSizes> getLargestProcesses(int count) {
+        return getLargestProcesses(TOTAL, count);
+    }
+
+    /**
+     * Get the processes with the most bytes in the folders of a type. Processes without such folders are not returned.
+     *
+     * @param type the folder type, e.g. master or ocr/alto, or {@link #TOTAL}
+     * @param count maximum number of processes
+     * @return the processes, largest first
+     */
+    public List<ProcessSizes> getLargestProcesses(String type, int count) {
+        List<ProcessSizes> largest = new ArrayList<>();
+        NavigableSet<RankEntry> ranking = rankings.get(type);
+        if (ranking == null) {
+            return largest;
+        }
+        for (RankEntry entry : ranking) {
+            if (largest.size() == count) {
+                break;
+            }
+            ProcessSizes sizes = processes.get(entry.processId);
+            // the entry may have been replaced in the meantime
+            if (sizes != null && sizes.getBytes(type) == entry.bytes) {
+                largest.add(sizes);
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Get the processes with the most bytes in the folders of several types. The sizes of all processes are summed up, so this takes longer than
+     * the ranking of a single type. Processes without such folders are not returned.
+     *
+     * @param types the folder types, see {@link ProcessSizes#getBytes(Collection)}
+     * @param count maximum number of processes
+     * @return the processes, largest first
+     */
+    public List<ProcessSizes> getLargestProcesses(Collection<String> types, int count) {
+        Comparator<ProcessSizes> bySize = Comparator.comparingLong((ProcessSizes sizes) -> sizes.getBytes(types))
+                .thenComparing(ProcessSizes::getProcessId, Comparator.reverseOrder());
+        // the smallest of the largest processes found so far is at the head
+        PriorityQueue<ProcessSizes> largest = new PriorityQueue<>(bySize);
+        for (ProcessSizes sizes : processes.values()) {
+            if (sizes.getBytes(types) == 0) {
+                continue;
+            }
+            largest.add(sizes);
+            if (largest.size() > count) {
+                largest.poll();
+            }
+        }
+        List<ProcessSizes> result = new ArrayList<>(largest);
+        result.sort(bySize.reversed());
+        return result;
+    }
+
+    public ProcessSizes getSizes(int processId) {
+        return processes.get(processId);
+    }
+
+    public int size() {
+        return processes.size();
+    }
+
+    /**
+     * Write the index into its file, if it was changed. The file is replaced atomically.
+     *
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            if (!modified) {
+                return;
+            }
+            modified = false;
+            Path temporaryFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                    write(out);
+                    out.flush();
+                    // the file replaces the last complete index, so it must be on disk before it gets its name
+                    channel.force(true);
+                }
+                Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                modified = true;
+                Files.deleteIfExists(temporaryFile);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Read the index from its file. A missing or damaged file results in an empty index, which is filled by the crawler again.
+     */
+    synchronized void load() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            read(in);
+            modified = false;
+            log.debug("Loaded sizes of {} processes from {}", processes.size(), indexFile);
+        } catch (IOException e) {
+            log.warn("Cannot read the size index {}, it is created again", indexFile, e);
+            processes.clear();
+            rankings.clear();
+        }
+    }
+
+    void write(OutputStream target) throws IOException {
+        GZIPOutputStream compressed = new GZIPOutputStream(target);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(compressed));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FILE_VERSION);
+        List<ProcessSizes> all = new ArrayList<>(processes.values());
+        out.writeInt(all.size());
+        for (ProcessSizes sizes : all) {
+            out.writeInt(sizes.getProcessId());
+            out.writeInt(sizes.getUnits().size());
+            for (Map.Entry<String, UnitSize> unit : sizes.getUnits().entrySet()) {
+                out.writeUTF(unit.getKey());
+                out.writeLong(unit.getValue().getModified());
+                out.writeBoolean(unit.getValue().isNested());
+                out.writeLong(unit.getValue().getFiles());
+                out.writeLong(unit.getValue().getBytes());
+            }
+        }
+        out.flush();
+        compressed.finish();
+    }
+
+    void read(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(source)));
+        if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+            throw new IOException("Unknown format");
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int processId = in.readInt();
+            int unitCount = in.readInt();
+            Map<String, UnitSize> units = new HashMap<>();
+            for (int j = 0; j < unitCount; j++) {
+                String name = in.readUTF();
+                long unitModified = in.readLong();
+                boolean nested = in.readBoolean();
+                long files = in.readLong();
+                long bytes = in.readLong();
+                units.put(name, new UnitSize(getFolderType(name), files, bytes, unitModified, nested));
+            }
+            update(processId, new ProcessSizes(processId, units));
+        }
+    }
+
+    private List<Integer> listProcessIds() {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(metadataFolder)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (name.chars().allMatch(Character::isDigit) && !name.isEmpty() && Files.isDirectory(entry)) {
+                    ids.add(Integer.valueOf(name));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.error("Cannot list the processes within {}", metadataFolder, e);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * List the units of a process folder by their path relative to the process folder
+     */
+    static Map<String, Path> listUnits(Path processFolder) throws IOException {
+        Map<String, Path> units = new HashMap<>();
+        for (String parent : new String[] { IMAGES_FOLDER, OCR_FOLDER, THUMBS }) {
+            Path folder = processFolder.resolve(parent);
+            if (Files.isDirectory(folder)) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, entry -> Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS))) {
+                    for (Path entry : stream) {
+                        units.put(parent + "/" + entry.getFileName(), entry);
+                    }
+                }
+            }
+        }
+        for (String name : new String[] { EXPORT, IMPORT }) {
+            Path folder = processFolder.resolve(name);
+            if (Files.isDirectory(folder, LinkOption.NOFOLLOW_LINKS)) {
+                units.put(name, folder);
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Get the folder type of a unit. Units with a configured folder name get its type, other ocr folders are named after the suffix of their
+     * name and other image folders get the type {@link #IMAGES}.
+     *
+     * @param unit path of the unit relative to the process folder, e.g. images/master_title_media or ocr/title_alto
+     * @return the type, one of the constants of this class
+     */
+    String getFolderType(String unit) {
+        int slash = unit.indexOf('/');
+        if (slash == -1) {
+            return unit;
+        }
+        String parent = unit.substring(0, slash);
+        String name = unit.substring(slash + 1);
+        if (THUMBS.equals(parent)) {
+            return THUMBS;
+        }
+        for (Map.Entry<Pattern, String> folderType : folderTypes.entrySet()) {
+            if (folderType.getKey().matcher(unit).matches()) {
+                return folderType.getValue();
+            }
+        }
+        if (OCR_FOLDER.equals(parent)) {
+            return OCR_PREFIX + name.substring(name.lastIndexOf('_') + 1);
+        }
+        return IMAGES;
+    }
+
+    private static long getModified(Path folder) {
+        try {
+            return Files.getLastModifiedTime(folder, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Measure a unit, the modification time is read first, so changes during the walk are found by the next pass
+     *
+     * @return the size, null if the unit was removed in the meantime
+     */
+    private static UnitSize measure(Path folder, String type) throws IOException {
+        long unitModified = getModified(folder);
+        long[] counts = new long[2];
+        boolean[] nested = new boolean[1];
+        try {
+            Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(folder)) {
+                        nested[0] = true;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        counts[0]++;
+                        counts[1] += attrs.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // removed while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return new UnitSize(type, counts[0], counts[1], unitModified, nested[0]);
+    }
+
+    /**
+     * Position of a process within the ranking of a folder type, largest first
+     */
+    private static final class RankEntry implements Comparable<RankEntry> {
+        private final int processId;
+        private final long bytes;
+
+        RankEntry(int processId, long bytes) {
+            this.processId = processId;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int compareTo(RankEntry other) {
+            int result = Long.compare(other.bytes, bytes);
+            return result != 0 ? result : Integer.compare(processId, other.processId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RankEntry && compareTo((RankEntry) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * processId + Long.hashCode(bytes);
+        }
+    }
+
+    /**
+     * Files and bytes of a single unit
+     */
+    @Getter
+    public static class UnitSize {
+        private final String type;
+        private final long files;
+        private final long bytes;
+        /** modification time of the unit folder when it was measured */
+        private final long modified;
+        /** the unit contains sub folders, their changes are not visible in the modification time of the unit */
+        private final boolean nested;
+
+        UnitSize(String type, long files, long bytes, long modified, boolean nested) {
+            this.type = type;
+            this.files = files;
+            this.bytes = bytes;
+            this.modified = modified;
+            this.nested = nested;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof UnitSize)) {
+                return false;
+            }
+            UnitSize other = (UnitSize) obj;
+            return type.equals(other.type) && files == other.files && bytes == other.bytes && modified == other.modified && nested == other.nested;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(bytes) * 31 + Long.hashCode(modified);
+        }
+    }
+
+    /**
+     * Sizes of the units of one process, the object is not changed after it was created
+     */
+    public static class ProcessSizes {
+        @Getter
+        private final int processId;
+        @Getter
+        private final Map<String, UnitSize> units;
+        @Getter
+        private final long totalBytes;
+        // bytes summed up by folder type, including TOTAL, types without bytes are left out
+        @Getter
+        private final Map<String, Long> bytesByType;
+
+        ProcessSizes(int processId, Map<String, UnitSize> units) {
+            this.processId = processId;
+            this.units = Collections.unmodifiableMap(units);
+            Map<String, Long> bytes = new HashMap<>();
+            long total = 0;
+            for (UnitSize unit : units.values()) {
+                if (unit.getBytes() > 0) {
+                    bytes.merge(unit.getType(), unit.getBytes(), Long::sum);
+                    total += unit.getBytes();
+                }
+            }
+            totalBytes = total;
+            if (total > 0) {
+                bytes.put(TOTAL, total);
+            }
+            bytesByType = Collections.unmodifiableMap(bytes);
+        }
+
+        /**
+         * @param type the folder type, e.g. master or ocr/alto
+         * @return bytes of all units of this type
+         */
+        public long getBytes(String type) {
+            return bytesByType.getOrDefault(type, 0L);
+        }
+
+        /**
+         * @param types folder types, e.g. master or ocr/alto, the type ocr contains all folders within ocr/
+         * @return bytes of all units of these types
+         */
+        public long getBytes(Collection<String> types) {
+            long bytes = 0;
+            for (Map.Entry<String, Long> entry : bytesByType.entrySet()) {
+                String type = entry.getKey();
+                int slash = type.indexOf('/');
+                if (!TOTAL.equals(type) && (types.contains(type) || slash != -1 && types.contains(type.substring(0, slash)))) {
+                    bytes += entry.getValue();
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * @param type the folder type, e.g. master or ocr/alto
+         * @return files of all units of this type
+         */
+        public long getFiles(String type) {
+            return units.values().stream().filter(unit -> unit.getType().equals(type)).mapToLong(UnitSize::getFiles).sum();
+        }
+    }
+}
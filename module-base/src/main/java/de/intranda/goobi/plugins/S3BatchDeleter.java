@@ -0,0 +1,180 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+import de.intranda.goobi.plugins.S3DeletionClient.ObjectPage;
+import de.intranda.goobi.plugins.S3DeletionClient.S3ThrottlingException;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Deletes all objects below a prefix with as few requests as possible. The prefix is listed page by page and the keys are deleted with
+ * multi-object delete requests of up to 1000 keys. Several delete requests can be in flight at the same time, throttled requests are retried
+ * with exponential backoff.
+ */
+@Log4j2
+public class S3BatchDeleter implements AutoCloseable {
+
+    /** maximum number of keys S3 accepts in one multi-object delete request */
+    public static final int MAX_KEYS_PER_REQUEST = 1000;
+
+    private static final int MAX_ATTEMPTS = 6;
+
+    private static final long DEFAULT_BACKOFF_MILLIS = 200;
+
+    private final S3DeletionClient client;
+
+    private final ExecutorService executor;
+
+    private final Semaphore inFlight;
+
+    private final long backoffMillis;
+
+    public S3BatchDeleter(S3DeletionClient client, int maxRequestsInFlight) {
+        this(client, maxRequestsInFlight, DEFAULT_BACKOFF_MILLIS);
+    }
+
+    S3BatchDeleter(S3DeletionClient client, int maxRequestsInFlight, long backoffMillis) {
+        this.client = client;
+        int threads = Math.max(1, maxRequestsInFlight);
+        executor = Executors.newFixedThreadPool(threads);
+        inFlight = new Semaphore(threads);
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Delete all objects with the given prefix
+     * 
+     * @param prefix the key prefix, usually the key of a folder ending with a slash
+     * @return number of deleted objects
+     * @throws IOException if the listing or a deletion failed
+     */
+    public long deletePrefix(String prefix) throws IOException {
+        return deletePrefix(prefix, new DeletionCounter());
+    }
+
+    /**
+     * Delete all objects with the given prefix and count them
+     * 
+     * @param prefix the key prefix, usually the key of a folder ending with a slash
+     * @param counter counts the deleted objects and their size
+     * @return number of deleted objects
+     * @throws IOException if the listing or a deletion failed
+     */
+    public long deletePrefix(String prefix, DeletionCounter counter) throws IOException {
+        return deletePrefix(prefix, key -> true, counter);
+    }
+
+    /**
+     * Delete the objects with the given prefix that are accepted by the filter and count them
+     * 
+     * @param prefix the key prefix, usually the key of a folder ending with a slash
+     * @param keyFilter selects the keys to delete
+     * @param counter counts the deleted objects and their size
+     * @return number of deleted objects
+     * @throws IOException if the listing or a deletion failed
+     */
+    public long deletePrefix(String prefix, Predicate<String> keyFilter, DeletionCounter counter) throws IOException {
+        List<Future<Integer>> requests = new ArrayList<>();
+        long deleted = 0;
+        long listedBytes = 0;
+        try {
+            String token = null;
+            do {
+                DeletionRateLimiter.getInstance().acquireMetadataOperations(1);
+                ObjectPage page = client.listObjects(prefix, token);
+                List<String> keys = new ArrayList<>(page.getKeys().size());
+                for (int i = 0; i < page.getKeys().size(); i++) {
+                    String key = page.getKeys().get(i);
+                    if (keyFilter.test(key)) {
+                        keys.add(key);
+                        listedBytes += page.getSize(i);
+                    }
+                }
+                for (int start = 0; start < keys.size(); start += MAX_KEYS_PER_REQUEST) {
+                    List<String> batch = new ArrayList<>(keys.subList(start, Math.min(keys.size(), start + MAX_KEYS_PER_REQUEST)));
+                    DeletionRateLimiter.getInstance().acquireDeletes(batch.size());
+                    // wait until a slot is free, so the listing does not run ahead of the deletion
+                    inFlight.acquire();
+                    try {
+                        requests.add(executor.submit(() -> {
+                            try {
+                                deleteWithRetry(batch);
+                                return batch.size();
+                            } finally {
+                                inFlight.release();
+                            }
+                        }));
+                    } catch (RuntimeException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                }
+                // only the requests of the current pages are kept, independent of the number of objects below the prefix
+                deleted += collectFinished(requests);
+                token = page.getNextContinuationToken();
+            } while (token != null);
+
+            for (Future<Integer> request : requests) {
+                deleted += request.get();
+            }
+            counter.add(deleted, listedBytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Deletion of prefix " + prefix + " was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<Integer> request : requests) {
+                request.cancel(false);
+            }
+        }
+        return deleted;
+    }
+
+    private static long collectFinished(List<Future<Integer>> requests) throws InterruptedException, ExecutionException {
+        long deleted = 0;
+        Iterator<Future<Integer>> iterator = requests.iterator();
+        while (iterator.hasNext()) {
+            Future<Integer> request = iterator.next();
+            if (request.isDone()) {
+                deleted += request.get();
+                iterator.remove();
+            }
+        }
+        return deleted;
+    }
+
+    private void deleteWithRetry(List<String> keys) throws IOException, InterruptedException {
+        long wait = backoffMillis;
+        for (int attempt = 1;; attempt++) {
+            try {
+                client.deleteObjects(keys);
+                return;
+            } catch (S3ThrottlingException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Delete request was throttled, retry {} in {} ms", attempt, wait);
+                Thread.sleep(wait);
+                wait *= 2;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,75 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Minimal set of S3 operations needed to delete all objects below a prefix. The interface allows the batch deletion to be tested without a real
+ * S3 endpoint.
+ */
+public interface S3DeletionClient {
+
+    /**
+     * List one page of object keys starting with the given prefix
+     * 
+     * @param prefix key prefix
+     * @param continuationToken token of the previous page or null for the first page
+     * @return the page
+     * @throws IOException
+     */
+    ObjectPage listObjects(String prefix, String continuationToken) throws IOException;
+
+    /**
+     * Delete up to 1000 objects with a single request
+     * 
+     * @param keys keys to delete
+     * @throws S3ThrottlingException if the request was rejected because of too many requests, it can be retried
+     * @throws IOException if the deletion failed
+     */
+    void deleteObjects(List<String> keys) throws IOException;
+
+    @Getter
+    class ObjectPage {
+        private final List<String> keys;
+        private final String nextContinuationToken;
+        /** sizes of the objects in the order of the keys, empty if unknown */
+        private final List<Long> sizes;
+        /** sum of the sizes of all objects of this page */
+        private final long bytes;
+
+        public ObjectPage(List<String> keys, String nextContinuationToken) {
+            this(keys, nextContinuationToken, Collections.emptyList());
+        }
+
+        public ObjectPage(List<String> keys, String nextContinuationToken, List<Long> sizes) {
+            this.keys = keys;
+            this.nextContinuationToken = nextContinuationToken;
+            this.sizes = sizes;
+            long sum = 0;
+            for (Long size : sizes) {
+                sum += size;
+            }
+            bytes = sum;
+        }
+
+        /**
+         * @param index index of the key
+         * @return size of the object, 0 if unknown
+         */
+        public long getSize(int index) {
+            return index < sizes.size() ? sizes.get(index) : 0;
+        }
+    }
+
+    class S3ThrottlingException extends IOException {
+
+        private static final long serialVersionUID = -3329447632098714587L;
+
+        public S3ThrottlingException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
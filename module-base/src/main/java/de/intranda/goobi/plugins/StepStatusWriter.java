@@ -0,0 +1,49 @@
+package de.intranda.goobi.plugins;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import de.intranda.goobi.plugins.IdListTransaction.ConnectionProvider;
+import de.sub.goobi.persistence.managers.MySQLHelper;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Changes the status of tasks directly in the task table, without saving the whole process.
+ *
+ * Saving a process writes the process and all of its tasks, properties and templates. To deactivate the remaining tasks, only the status column
+ * of the affected rows is updated, with one statement inside one transaction.
+ */
+@Log4j2
+public class StepStatusWriter {
+
+    private static final String UPDATE_STATUS = "UPDATE schritte SET Bearbeitungsstatus = ? WHERE SchritteID IN (%s)";
+
+    private final IdListTransaction transaction;
+
+    /**
+     * @return a writer that uses the connection pool of Goobi workflow
+     */
+    public static StepStatusWriter getDefault() {
+        return new StepStatusWriter(() -> MySQLHelper.getInstance().getConnection());
+    }
+
+    public StepStatusWriter(ConnectionProvider connectionProvider) {
+        transaction = new IdListTransaction(connectionProvider);
+    }
+
+    /**
+     * Set the status of the given tasks. Either all tasks are changed or none.
+     *
+     * @param stepIds ids of the tasks to change
+     * @param status the new status value
+     * @return number of changed rows
+     * @throws SQLException
+     */
+    public int updateStatus(List<Integer> stepIds, int status) throws SQLException {
+        int updated = transaction.executeUpdate(UPDATE_STATUS, stepIds, status);
+        if (updated > 0) {
+            log.debug("Changed status of {} tasks to {}", updated, status);
+        }
+        return updated;
+    }
+}
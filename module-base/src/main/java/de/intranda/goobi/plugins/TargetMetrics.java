@@ -0,0 +1,121 @@
+package de.intranda.goobi.plugins;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Collects the deletion statistics of one target type. The latency histogram uses buckets with powers of two as upper bound, so it has a fixed
+ * size and can be updated without locking.
+ */
+public class TargetMetrics implements TargetMetricsMXBean {
+
+    /** the last bucket counts everything from 2^30 ms (about 12 days) on */
+    private static final int BUCKETS = 32;
+
+    @Getter
+    private final String targetType;
+
+    private final LongAdder deletions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder filesRemoved = new LongAdder();
+    private final LongAdder bytesFreed = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final AtomicLong maxMillis = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    public TargetMetrics(String targetType) {
+        this.targetType = targetType;
+    }
+
+    public void record(long millis, long files, long bytes, boolean success) {
+        deletions.increment();
+        if (!success) {
+            errors.increment();
+        }
+        filesRemoved.add(files);
+        bytesFreed.add(bytes);
+        totalMillis.add(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+        histogram.incrementAndGet(bucket(millis));
+    }
+
+    static int bucket(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        // smallest i with millis < 2^i
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+    }
+
+    @Override
+    public long getDeletions() {
+        return deletions.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getFilesRemoved() {
+        return filesRemoved.sum();
+    }
+
+    @Override
+    public long getBytesFreed() {
+        return bytesFreed.sum();
+    }
+
+    @Override
+    public long getTotalMillis() {
+        return totalMillis.sum();
+    }
+
+    @Override
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    @Override
+    public long getLatencyP50Millis() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Millis() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] values = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = histogram.get(i);
+        }
+        return values;
+    }
+
+    long percentile(double quantile) {
+        long[] values = getLatencyHistogram();
+        long count = 0;
+        for (long value : values) {
+            count += value;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += values[i];
+            if (seen >= rank) {
+                return Math.min(1L << i, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+}
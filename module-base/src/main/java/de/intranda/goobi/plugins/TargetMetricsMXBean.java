@@ -0,0 +1,36 @@
+package de.intranda.goobi.plugins;
+
+/**
+ * Deletion statistics of one target type, e.g. master or thumbs, published via JMX
+ */
+public interface TargetMetricsMXBean {
+
+    String getTargetType();
+
+    long getDeletions();
+
+    long getErrors();
+
+    long getFilesRemoved();
+
+    long getBytesFreed();
+
+    long getTotalMillis();
+
+    long getMaxMillis();
+
+    /**
+     * @return median deletion time in milliseconds, as upper bound of the histogram bucket
+     */
+    long getLatencyP50Millis();
+
+    /**
+     * @return 99th percentile of the deletion time in milliseconds, as upper bound of the histogram bucket
+     */
+    long getLatencyP99Millis();
+
+    /**
+     * @return number of deletions per histogram bucket, bucket i counts deletions of less than 2^i milliseconds
+     */
+    long[] getLatencyHistogram();
+}
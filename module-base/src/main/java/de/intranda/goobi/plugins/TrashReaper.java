@@ -0,0 +1,197 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.sub.goobi.config.ConfigurationHelper;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Moves folders into a trash area on the file system of the metadata folder and deletes them physically in the background.
+ *
+ * Moving a folder is a single rename on the same file system, so the calling step does not have to wait for the deletion of the content. The
+ * trash area is scanned again on start and in regular intervals, so entries left over from a restart or a failed deletion are picked up again.
+ */
+@Log4j2
+public class TrashReaper {
+
+    public static final String TRASH_FOLDER_NAME = ".trash";
+
+    /** target type used for the deletion metrics of the background deletion */
+    public static final String METRICS_TARGET_TYPE = "trash";
+
+    private static final long RESCAN_INTERVAL_MINUTES = 10;
+
+    private static final int REAPER_PARALLELISM = 2;
+
+    private static TrashReaper instance;
+
+    @Getter
+    private final Path trashFolder;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ParallelDirectoryDeleter deleter;
+
+    // entries that are currently queued or in deletion
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Get the reaper for the trash area within the metadata folder. The reaper is started on first use.
+     *
+     * @return the shared reaper instance
+     */
+    public static synchronized TrashReaper getInstance() {
+        if (instance == null) {
+            instance = new TrashReaper(Paths.get(ConfigurationHelper.getInstance().getMetadataFolder(), TRASH_FOLDER_NAME), REAPER_PARALLELISM);
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the reaper, if the trash area contains entries, e.g. left over from a restart during the background deletion
+     */
+    public static synchronized void startIfNotEmpty() {
+        if (instance != null) {
+            return;
+        }
+        Path trashFolder = Paths.get(ConfigurationHelper.getInstance().getMetadataFolder(), TRASH_FOLDER_NAME);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashFolder)) {
+            if (stream.iterator().hasNext()) {
+                getInstance();
+            }
+        } catch (NoSuchFileException e) {
+            // the trash area was never used
+        } catch (IOException e) {
+            log.warn("Cannot check the trash area {}", trashFolder, e);
+        }
+    }
+
+    TrashReaper(Path trashFolder, int parallelism) {
+        this.trashFolder = trashFolder;
+        deleter = new ParallelDirectoryDeleter(parallelism);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "delete-content-trash-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::rescan, 0, RESCAN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+        deleter.close();
+    }
+
+    /**
+     * Move a folder into the trash area and schedule its deletion.
+     *
+     * @param folder the folder to remove
+     * @param prefix prefix for the name within the trash area, e.g. the process id
+     * @return true if the folder was moved, false if it must be deleted directly, e.g. because it is located on a different file system
+     */
+    public boolean moveToTrash(Path folder, String prefix) {
+        try {
+            Files.createDirectories(trashFolder);
+            Path target = trashFolder.resolve(prefix + "_" + folder.getFileName() + "_" + UUID.randomUUID());
+            Files.move(folder, target, StandardCopyOption.ATOMIC_MOVE);
+            schedule(target);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Folder {} is not located on the file system of {}", folder, trashFolder);
+        } catch (IOException e) {
+            log.warn("Cannot move folder {} into the trash area {}", folder, trashFolder, e);
+        }
+        return false;
+    }
+
+    /**
+     * Schedule all entries of the trash area that are not queued yet. Entries that are still present at this point are reported as leftovers.
+     */
+    public void rescan() {
+        List<Path> leftovers = getLeftovers();
+        int scheduled = 0;
+        for (Path entry : leftovers) {
+            if (schedule(entry)) {
+                scheduled++;
+            }
+        }
+        if (scheduled > 0) {
+            log.info("Found {} leftover entries in trash area {}, deletion was scheduled", scheduled, trashFolder);
+        }
+    }
+
+    /**
+     * List all entries that are still waiting for deletion in the trash area
+     *
+     * @return entries of the trash area
+     */
+    public List<Path> getLeftovers() {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(trashFolder)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(trashFolder)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            log.error("Cannot list trash area {}", trashFolder, e);
+        }
+        return entries;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private boolean schedule(Path entry) {
+        if (pending.add(entry)) {
+            scheduler.execute(() -> reap(entry));
+            return true;
+        }
+        return false;
+    }
+
+    private void reap(Path entry) {
+        long start = System.currentTimeMillis();
+        DeletionCounter counter = new DeletionCounter();
+        boolean success = false;
+        try {
+            if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                deleter.deleteDir(entry, counter);
+            } else {
+                long size = Files.size(entry);
+                if (Files.deleteIfExists(entry)) {
+                    counter.addFile(size);
+                }
+            }
+            success = true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot delete {} from trash area, it will be retried on the next scan", entry, e);
+        } finally {
+            pending.remove(entry);
+            DeletionMetrics.getInstance().record(METRICS_TARGET_TYPE, System.currentTimeMillis() - start, counter, success);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkContentDeletionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Records the handled processes instead of running the plugin
+     */
+    private static class RecordingDeletion extends BulkContentDeletion {
+        private final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> failing;
+        private final AtomicInteger processes = new AtomicInteger();
+        private final AtomicInteger maxProcesses = new AtomicInteger();
+        private final AtomicInteger io = new AtomicInteger();
+        private final AtomicInteger maxIo = new AtomicInteger();
+
+        private RecordingDeletion(int processesInFlight, int ioOperationsInFlight, Path checkpointFile, Integer... failing) {
+            super("delete content", processesInFlight, ioOperationsInFlight, checkpointFile);
+            this.failing = Arrays.asList(failing);
+        }
+
+        @Override
+        String deleteContent(Integer processId, BulkDeletionSummary summary) {
+            handled.add(processId);
+            maxProcesses.accumulateAndGet(processes.incrementAndGet(), Math::max);
+            try {
+                // two folders per process, each one needs a permit
+                for (int i = 0; i < 2; i++) {
+                    getIoPermits().acquireUninterruptibly();
+                    try {
+                        maxIo.accumulateAndGet(io.incrementAndGet(), Math::max);
+                        sleep(5);
+                        io.decrementAndGet();
+                    } finally {
+                        getIoPermits().release();
+                    }
+                }
+            } finally {
+                processes.decrementAndGet();
+            }
+            if (failing.contains(processId)) {
+                summary.addFailure(processId);
+                return "failed";
+            }
+            summary.addSuccess();
+            return "done";
+        }
+    }
+
+    private static void sleep(long millis) {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(Math.max(1, end - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                // finish the simulated work like a deletion that cannot be stopped
+            }
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.txt");
+        RecordingDeletion first = new RecordingDeletion(2, 2, checkpoint, 3);
+        BulkDeletionSummary summary = first.run(range(1, 6));
+        assertEquals(5, summary.getSucceeded());
+        assertEquals(Collections.singletonList(3), summary.getFailedProcessIds());
+        assertEquals(6, Files.readAllLines(checkpoint, StandardCharsets.UTF_8).size());
+
+        // finished processes are skipped, the failed process is tried again
+        RecordingDeletion second = new RecordingDeletion(2, 2, checkpoint);
+        summary = second.run(range(1, 7));
+        assertEquals(5, summary.getResumed());
+        assertEquals(2, summary.getSucceeded());
+        List<Integer> handled = new ArrayList<>(second.handled);
+        Collections.sort(handled);
+        assertEquals(Arrays.asList(3, 7), handled);
+    }
+
+    @Test
+    public void testDryRunDoesNotFinishProcesses() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.txt");
+        RecordingDeletion dryRun = new RecordingDeletion(2, 2, checkpoint);
+        dryRun.setDryRun(true);
+        dryRun.run(range(1, 3));
+        assertTrue(Files.readAllLines(checkpoint, StandardCharsets.UTF_8).stream().allMatch(line -> line.endsWith(";planned")));
+
+        // another dry run skips the planned processes
+        RecordingDeletion secondDryRun = new RecordingDeletion(2, 2, checkpoint);
+        secondDryRun.setDryRun(true);
+        assertEquals(3, secondDryRun.run(range(1, 3)).getResumed());
+
+        // the real deletion handles them again
+        RecordingDeletion deletion = new RecordingDeletion(2, 2, checkpoint);
+        BulkDeletionSummary summary = deletion.run(range(1, 3));
+        assertEquals(0, summary.getResumed());
+        assertEquals(3, summary.getSucceeded());
+    }
+
+    @Test
+    public void testInFlightLimits() throws Exception {
+        RecordingDeletion deletion = new RecordingDeletion(4, 2, folder.getRoot().toPath().resolve("checkpoint.txt"));
+        BulkDeletionSummary summary = deletion.run(range(1, 40));
+        assertEquals(40, summary.getSucceeded());
+        assertTrue(deletion.maxProcesses.get() <= 4);
+        assertTrue(deletion.maxIo.get() <= 2);
+        // the limits are used, not only respected
+        assertEquals(2, deletion.maxIo.get());
+    }
+
+    @Test
+    public void testInterruptWaitsForRunningProcesses() throws Exception {
+        Path checkpoint = folder.getRoot().toPath().resolve("checkpoint.txt");
+        CountDownLatch started = new CountDownLatch(2);
+        BulkContentDeletion deletion = new BulkContentDeletion("delete content", 2, 2, checkpoint) {
+            @Override
+            String deleteContent(Integer processId, BulkDeletionSummary summary) {
+                started.countDown();
+                sleep(200);
+                summary.addSuccess();
+                return "done";
+            }
+        };
+        Thread runner = new Thread(() -> {
+            try {
+                deletion.run(range(1, 10));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        runner.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        runner.interrupt();
+        runner.join(10000);
+
+        // the processes that were running during the interrupt are recorded before the checkpoint file is closed
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        for (String line : lines) {
+            assertTrue(line.endsWith(";done"));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ContentFilterTest {
+
+    @Test
+    public void testIncludeAndExclude() {
+        ContentFilter filter = new ContentFilter(DeletionTarget.MASTER, Arrays.asList("glob:*.tif"), Arrays.asList("glob:00000001.*"));
+        assertTrue(filter.matches(Paths.get("00000002.tif")));
+        assertTrue(filter.matches(Paths.get("sub/00000002.tif")));
+        assertFalse(filter.matches(Paths.get("00000001.tif")));
+        assertFalse(filter.matches(Paths.get("00000002.jpg")));
+    }
+
+    @Test
+    public void testExcludeOnly() {
+        ContentFilter filter = new ContentFilter(DeletionTarget.MEDIA, Collections.emptyList(), Arrays.asList("*.jpg"));
+        assertTrue(filter.matches(Paths.get("00000002.tif")));
+        assertFalse(filter.matches(Paths.get("00000002.jpg")));
+    }
+
+    @Test
+    public void testRegexAndRelativePath() {
+        ContentFilter filter = new ContentFilter(DeletionTarget.IMAGES, Arrays.asList("regex:.*\\.tmp", "glob:*_media/**"), Collections.emptyList());
+        assertTrue(filter.matches(Paths.get("conversion.tmp")));
+        assertTrue(filter.matches(Paths.get("fixture_media/00000001.tif")));
+        assertFalse(filter.matches(Paths.get("master_fixture/00000001.tif")));
+    }
+}
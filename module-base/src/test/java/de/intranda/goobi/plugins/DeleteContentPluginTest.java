@@ -3,6 +3,7 @@ package de.intranda.goobi.plugins;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -10,15 +11,23 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.configuration.XMLConfiguration;
 import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.easymock.EasyMock;
 import org.goobi.beans.Process;
+import org.goobi.beans.Processproperty;
 import org.goobi.beans.Project;
 import org.goobi.beans.Step;
 import org.goobi.beans.User;
+import org.goobi.production.enums.PluginReturnValue;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -424,6 +433,138 @@ public class DeleteContentPluginTest {
 
     }
 
+    @Test
+    public void testDeletePropertiesLoadsPropertiesOnce() throws Exception {
+        List<Processproperty> properties = new ArrayList<>();
+        String[] names = { "Opening angle", "Font type", "Keep me" };
+        for (int i = 0; i < names.length; i++) {
+            Processproperty property = new Processproperty();
+            property.setId(i + 1);
+            property.setTitel(names[i]);
+            properties.add(property);
+        }
+        EasyMock.expect(PropertyManager.getProcessPropertiesForProcess(1)).andReturn(properties).once();
+        PowerMock.replay(PropertyManager.class);
+
+        List<List<Integer>> deleted = new ArrayList<>();
+        ProcessPropertyDeleter deleter = new ProcessPropertyDeleter(null) {
+            @Override
+            public int deleteProperties(List<Integer> propertyIds) {
+                deleted.add(propertyIds);
+                return propertyIds.size();
+            }
+        };
+
+        Set<String> labels = new HashSet<>();
+        labels.add("Opening angle");
+        labels.add("Font type");
+        for (int i = 0; i < 13; i++) {
+            labels.add("unused property " + i);
+        }
+
+        assertEquals(2, DeleteContentPlugin.deleteProperties(1, labels, deleter));
+        PowerMock.verify(PropertyManager.class);
+        // all properties are deleted with one call
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), deleted);
+    }
+
+    /**
+     * Replaces the deletion and the status changes of the task, so only the handling of the run is used
+     */
+    private static class RecordingPlugin extends DeleteContentPlugin {
+        private final boolean result;
+        private final RuntimeException error;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean closed;
+        private volatile boolean failed;
+        private volatile String failure;
+
+        private RecordingPlugin(boolean result, RuntimeException error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        @Override
+        void readConfiguration() {
+            // the settings are set by the test
+        }
+
+        @Override
+        public boolean execute() {
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+
+        @Override
+        void closeTask() {
+            closed = true;
+            finished.countDown();
+        }
+
+        @Override
+        void failTask(String message) {
+            failed = true;
+            failure = message;
+            finished.countDown();
+        }
+    }
+
+    private RecordingPlugin runPlugin(boolean asynchronous, boolean result, RuntimeException error, PluginReturnValue expected)
+            throws Exception {
+        RecordingPlugin plugin = new RecordingPlugin(result, error);
+        plugin.initialize(process.getSchritte().get(1), "");
+        plugin.setAsynchronous(asynchronous);
+        assertEquals(expected, plugin.run());
+        if (asynchronous) {
+            assertTrue(plugin.finished.await(10, TimeUnit.SECONDS));
+        }
+        DeletionProgress progress = plugin.getProgress();
+        assertEquals(result ? DeletionProgress.State.FINISHED : DeletionProgress.State.FAILED, progress.getState());
+        // the progress is only kept while the deletion runs
+        assertNull(DeletionProgressRegistry.getInstance().getProgress(process.getId()));
+        return plugin;
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        RecordingPlugin plugin = runPlugin(false, true, null, PluginReturnValue.FINISH);
+        // the workflow closes the task
+        assertFalse(plugin.closed);
+        assertFalse(plugin.failed);
+    }
+
+    @Test
+    public void testRunFails() throws Exception {
+        RecordingPlugin plugin = runPlugin(false, false, null, PluginReturnValue.ERROR);
+        assertFalse(plugin.failed);
+    }
+
+    @Test
+    public void testRunAsynchronously() throws Exception {
+        RecordingPlugin plugin = runPlugin(true, true, null, PluginReturnValue.WAIT);
+        assertTrue(plugin.closed);
+        assertFalse(plugin.failed);
+    }
+
+    @Test
+    public void testRunAsynchronouslyFails() throws Exception {
+        RecordingPlugin plugin = runPlugin(true, false, null, PluginReturnValue.WAIT);
+        assertFalse(plugin.closed);
+        assertTrue(plugin.failed);
+        // the reason was already written by the deletion
+        assertNull(plugin.failure);
+    }
+
+    @Test
+    public void testRunAsynchronouslyWithError() throws Exception {
+        RecordingPlugin plugin = runPlugin(true, false, new IllegalStateException("storage not available"), PluginReturnValue.WAIT);
+        assertFalse(plugin.closed);
+        assertTrue(plugin.failed);
+        assertEquals("storage not available", plugin.failure);
+    }
+
     public Process getProcess() {
         Project project = new Project();
         project.setTitel("projectName");
@@ -0,0 +1,150 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.intranda.goobi.plugins.DeletionTarget.Kind;
+
+public class DeletionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalFolder;
+
+    private final DeletionTarget master = new DeletionTarget(DeletionTarget.MASTER, Paths.get("/opt/digiverso/goobi/metadata/1/images/master"),
+            Kind.DIRECTORY);
+    private final DeletionTarget media = new DeletionTarget(DeletionTarget.MEDIA, Paths.get("/opt/digiverso/goobi/metadata/1/images/media"),
+            Kind.DIRECTORY);
+    private final DeletionTarget thumbs = new DeletionTarget(DeletionTarget.THUMBS, Paths.get("/opt/digiverso/goobi/metadata/1/thumbs"),
+            Kind.DIRECTORY);
+
+    private final List<DeletionTarget> targets = Arrays.asList(master, media, thumbs);
+
+    private final String runKey = DeletionJournal.createRunKey(5, new Date(1000), targets);
+
+    @Before
+    public void setUp() throws Exception {
+        journalFolder = folder.newFolder(DeletionJournal.JOURNAL_FOLDER_NAME).toPath();
+    }
+
+    @Test
+    public void testResumeInterruptedRun() throws Exception {
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 1, runKey)) {
+            assertFalse(journal.isResumed());
+            journal.plan(targets);
+            journal.completed(master);
+            // interrupted before media was completed
+        }
+
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 1, runKey)) {
+            assertTrue(journal.isResumed());
+            assertEquals(2, journal.getRemainingCount());
+            assertTrue(journal.isCompleted(master));
+            assertFalse(journal.isCompleted(media));
+            journal.plan(targets);
+            journal.completed(media);
+            journal.completed(thumbs);
+            assertEquals(0, journal.getRemainingCount());
+            journal.finish();
+        }
+        assertFalse(Files.exists(journalFolder.resolve("1.log")));
+    }
+
+    @Test
+    public void testPlanIsWrittenOnce() throws Exception {
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 2, runKey)) {
+            journal.plan(targets);
+        }
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 2, runKey)) {
+            journal.plan(targets);
+        }
+        // the run and the three targets
+        assertEquals(4, Files.readAllLines(journalFolder.resolve("2.log")).size());
+    }
+
+    @Test
+    public void testJournalOfAnotherRunIsDiscarded() throws Exception {
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 4, runKey)) {
+            journal.plan(targets);
+            journal.completed(master);
+        }
+
+        // the task was executed again
+        String nextRun = DeletionJournal.createRunKey(5, new Date(2000), targets);
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 4, nextRun)) {
+            assertFalse(journal.isResumed());
+            assertFalse(journal.isCompleted(master));
+            journal.plan(targets);
+            journal.completed(master);
+        }
+
+        // the configuration of the task was changed
+        String otherTargets = DeletionJournal.createRunKey(5, new Date(2000), Arrays.asList(master, media));
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 4, otherTargets)) {
+            assertFalse(journal.isResumed());
+            assertFalse(journal.isCompleted(master));
+        }
+        assertEquals(1, Files.readAllLines(journalFolder.resolve("4.log")).size());
+    }
+
+    @Test
+    public void testLock() throws Exception {
+        try (DeletionJournal.ProcessLock lock = DeletionJournal.tryLock(journalFolder, 6)) {
+            assertNotNull(lock);
+            // a second run of the same process, e.g. the disk pressure watcher
+            assertNull(DeletionJournal.tryLock(journalFolder, 6));
+            try (DeletionJournal.ProcessLock other = DeletionJournal.tryLock(journalFolder, 7)) {
+                assertNotNull(other);
+            }
+        }
+        try (DeletionJournal.ProcessLock lock = DeletionJournal.tryLock(journalFolder, 6)) {
+            assertNotNull(lock);
+        }
+    }
+
+    @Test
+    public void testRunKey() {
+        assertEquals(runKey, DeletionJournal.createRunKey(5, new Date(1000), Arrays.asList(master, media, thumbs)));
+        assertNotEquals(runKey, DeletionJournal.createRunKey(6, new Date(1000), targets));
+        assertNotEquals(runKey, DeletionJournal.createRunKey(5, null, targets));
+        assertNotEquals(runKey, DeletionJournal.createRunKey(5, new Date(1000), Arrays.asList(media, master, thumbs)));
+    }
+
+    @Test
+    public void testIncompleteLastLine() throws Exception {
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 3, runKey)) {
+            journal.plan(targets);
+            journal.completed(master);
+        }
+        // crash while the next entry was written
+        Files.write(journalFolder.resolve("3.log"), "DO".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 3, runKey)) {
+            assertTrue(journal.isCompleted(master));
+            journal.completed(media);
+        }
+        try (DeletionJournal journal = DeletionJournal.open(journalFolder, 3, runKey)) {
+            assertTrue(journal.isCompleted(media));
+            assertEquals(1, journal.getRemainingCount());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class DeletionMetricsTest {
+
+    @Test
+    public void testRecordDeletions() {
+        DeletionMetrics metrics = new DeletionMetrics(null);
+        DeletionCounter counter = new DeletionCounter();
+        counter.addFile(100);
+        counter.addFile(50);
+        metrics.record(DeletionTarget.MASTER, 3, counter, true);
+        metrics.record(DeletionTarget.MASTER, 200, new DeletionCounter(), false);
+
+        TargetMetrics master = metrics.getTargetMetrics(DeletionTarget.MASTER);
+        assertEquals(2, master.getDeletions());
+        assertEquals(1, master.getErrors());
+        assertEquals(2, master.getFilesRemoved());
+        assertEquals(150, master.getBytesFreed());
+        assertEquals(203, master.getTotalMillis());
+        assertEquals(200, master.getMaxMillis());
+        assertEquals(1, metrics.getAllTargetMetrics().size());
+    }
+
+    @Test
+    public void testPercentiles() {
+        TargetMetrics metrics = new TargetMetrics(DeletionTarget.THUMBS);
+        for (int i = 0; i < 99; i++) {
+            metrics.record(5, 1, 1, true);
+        }
+        metrics.record(1000, 1, 1, true);
+        // 5 ms fall into the bucket up to 8 ms
+        assertEquals(8, metrics.getLatencyP50Millis());
+        assertEquals(8, metrics.getLatencyP99Millis());
+        metrics.record(1000, 1, 1, true);
+        assertEquals(1000, metrics.getLatencyP99Millis());
+    }
+
+    @Test
+    public void testBucket() {
+        assertEquals(0, TargetMetrics.bucket(0));
+        assertEquals(1, TargetMetrics.bucket(1));
+        assertEquals(2, TargetMetrics.bucket(2));
+        assertEquals(2, TargetMetrics.bucket(3));
+        assertEquals(31, TargetMetrics.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRegisterMXBean() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        DeletionMetrics metrics = new DeletionMetrics(server);
+        metrics.record(DeletionTarget.ADDITIONAL_PREFIX + "media_orig", 1, new DeletionCounter(), true);
+        ObjectName name = new ObjectName(DeletionMetrics.JMX_DOMAIN + ":type=DeleteContent,target=" + ObjectName.quote("additional:media_orig"));
+        assertTrue(server.isRegistered(name));
+        assertEquals(1L, server.getAttribute(name, "Deletions"));
+    }
+}
@@ -0,0 +1,70 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.intranda.goobi.plugins.DeletionPlan.PlannedTarget;
+import de.intranda.goobi.plugins.DeletionTarget.Kind;
+
+public class DeletionPlannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path processDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        processDirectory = folder.newFolder("1").toPath();
+        Path master = Files.createDirectories(processDirectory.resolve("images/master_fixture_media"));
+        for (int i = 1; i <= 20; i++) {
+            Files.write(master.resolve(String.format("%08d.tif", i)), new byte[100]);
+        }
+        Path alto = Files.createDirectories(processDirectory.resolve("ocr/fixture_alto/nested"));
+        Files.write(alto.resolve("00000001.xml"), new byte[10]);
+        Files.write(processDirectory.resolve("meta.xml"), new byte[50]);
+        Files.write(processDirectory.resolve("meta.xml.1"), new byte[40]);
+    }
+
+    @Test
+    public void testEstimate() throws Exception {
+        DeletionPlan plan = new DeletionPlan();
+        try (DeletionPlanner planner = new DeletionPlanner(4, null)) {
+            planner.estimate(plan,
+                    Arrays.asList(new DeletionTarget(DeletionTarget.MASTER, processDirectory.resolve("images/master_fixture_media"), Kind.DIRECTORY),
+                            new DeletionTarget(DeletionTarget.MEDIA, processDirectory.resolve("images/fixture_media"), Kind.DIRECTORY),
+                            new DeletionTarget(DeletionTarget.OCR, processDirectory.resolve("ocr"), Kind.DIRECTORY),
+                            new DeletionTarget(DeletionTarget.METADATA_FILES, processDirectory, Kind.FILES)));
+        }
+
+        PlannedTarget master = plan.getTargets().get(0);
+        assertTrue(master.isExists());
+        assertEquals(20, master.getFiles());
+        assertEquals(2000, master.getBytes());
+
+        assertFalse(plan.getTargets().get(1).isExists());
+
+        assertEquals(1, plan.getTargets().get(2).getFiles());
+
+        // only the files directly within the process folder
+        PlannedTarget metadata = plan.getTargets().get(3);
+        assertEquals(2, metadata.getFiles());
+        assertEquals(90, metadata.getBytes());
+
+        assertEquals(23, plan.getTotalFiles());
+        assertEquals(2100, plan.getTotalBytes());
+        // nothing was deleted
+        assertEquals(20, new File(processDirectory.toFile(), "images/master_fixture_media").list().length);
+    }
+}
@@ -0,0 +1,120 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.xpath.XPathExpressionEngine;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeletionProfileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File configFile;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        configFile = folder.newFile("plugin_intranda_step_deleteContent.xml");
+        writeConfig("true");
+    }
+
+    private void writeConfig(String deleteMaster) throws Exception {
+        String xml = "<config><project>*</project><step>*</step><deleteMasterDirectory>" + deleteMaster + "</deleteMasterDirectory>"
+                + "<additionalFolder>images.jpeg</additionalFolder><parallelism>4</parallelism>"
+                + "<deleteMetadata name=\"singleDigCollection\"/><deleteMetadata name=\"DocLanguage\"/>"
+                + "<deleteProperty name=\"Opening angle\"/></config>";
+        Files.write(configFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Supplier<HierarchicalConfiguration> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            try {
+                XMLConfiguration config = new XMLConfiguration(configFile);
+                config.setExpressionEngine(new XPathExpressionEngine());
+                return config;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    @Test
+    public void testProfile() throws Exception {
+        DeletionProfile profile = new DeletionProfileCache(configFile.toPath()).getProfile("project", "step", loader());
+        assertTrue(profile.isDeleteMasterDirectory());
+        assertFalse(profile.isDeleteMediaDirectory());
+        assertEquals(4, profile.getParallelism());
+        assertEquals(1, profile.getAdditionalImageFolder().size());
+        assertEquals(2, profile.getMetadataToDelete().size());
+        assertTrue(profile.getPropertiesToDelete().contains("Opening angle"));
+        assertTrue(profile.getConfigurationErrors().isEmpty());
+    }
+
+    @Test
+    public void testUnknownScope() throws Exception {
+        String xml = "<config><project>*</project><step>*</step><deleteMetadata name=\"DocLanguage\" scope=\"anchor\"/>"
+                + "<deleteMetadata name=\"_urn\" scope=\"pages\"/></config>";
+        Files.write(configFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        DeletionProfile profile = new DeletionProfileCache(configFile.toPath()).getProfile("project", "step", loader());
+        assertEquals(Collections.singletonList("DocLanguage"), profile.getMetadataToDelete());
+        assertEquals(Collections.singletonList("Unknown scope 'pages' for metadata _urn"), profile.getConfigurationErrors());
+    }
+
+    @Test
+    public void testInvalidContentFilter() throws Exception {
+        String xml = "<config><project>*</project><step>*</step><contentFilter target=\"master\"><include>regex:*.tif</include></contentFilter>"
+                + "<contentFilter target=\"media\"><include>*.jpg</include></contentFilter></config>";
+        Files.write(configFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        DeletionProfile profile = new DeletionProfileCache(configFile.toPath()).getProfile("project", "step", loader());
+        assertEquals(Collections.singleton("media"), profile.getContentFilters().keySet());
+        assertEquals(1, profile.getConfigurationErrors().size());
+        assertTrue(profile.getConfigurationErrors().get(0).startsWith("Invalid rule '*.tif' in the content filter of master"));
+    }
+
+    @Test
+    public void testProfileIsCached() throws Exception {
+        DeletionProfileCache cache = new DeletionProfileCache(configFile.toPath());
+        DeletionProfile first = cache.getProfile("project", "step", loader());
+        DeletionProfile second = cache.getProfile("project", "step", loader());
+        cache.getProfile("other project", "step", loader());
+
+        assertSame(first, second);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testChangedConfigurationFile() throws Exception {
+        DeletionProfileCache cache = new DeletionProfileCache(configFile.toPath());
+        DeletionProfile first = cache.getProfile("project", "step", loader());
+
+        writeConfig("false");
+        Files.setLastModifiedTime(configFile.toPath(), FileTime.fromMillis(configFile.lastModified() + 10000));
+
+        DeletionProfile second = cache.getProfile("project", "step", loader());
+        assertNotSame(first, second);
+        assertFalse(second.isDeleteMasterDirectory());
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -0,0 +1,85 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Paths;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import de.intranda.goobi.plugins.DeletionTarget.Kind;
+
+public class DeletionProgressTest {
+
+    @Test
+    public void testProgressOverTargets() {
+        DeletionProgress progress = new DeletionProgress(1, "delete");
+        assertEquals(-1, progress.getPercent());
+        progress.setPlanned(4, 400);
+
+        DeletionCounter first = new DeletionCounter();
+        progress.startTarget(new DeletionTarget("media", Paths.get("/tmp/media"), Kind.DIRECTORY), first);
+        first.addFile(100);
+        // the running target is counted as well
+        assertEquals(1, progress.getDeletedFiles());
+        assertEquals(25, progress.getPercent());
+        first.addFile(100);
+        progress.finishTarget();
+        assertNull(progress.getCurrentTarget());
+
+        DeletionCounter second = new DeletionCounter();
+        progress.startTarget(new DeletionTarget("ocr", Paths.get("/tmp/ocr"), Kind.DIRECTORY), second);
+        second.add(2, 300);
+        assertEquals("ocr", progress.getCurrentTarget());
+        assertEquals(4, progress.getDeletedFiles());
+        assertEquals(500, progress.getDeletedBytes());
+        // more than planned is capped
+        assertEquals(100, progress.getPercent());
+    }
+
+    @Test
+    public void testRegistry() {
+        DeletionProgressRegistry registry = DeletionProgressRegistry.getInstance();
+        DeletionProgress progress = registry.register(42, "delete");
+        assertSame(progress, registry.getProgress(42));
+        registry.unregister(progress);
+        assertNull(registry.getProgress(42));
+    }
+
+    @Test
+    public void testRunningDeletionIsNotReplaced() {
+        DeletionProgressRegistry registry = DeletionProgressRegistry.getInstance();
+        DeletionProgress progress = registry.register(43, "delete");
+        assertNull(registry.register(43, "delete"));
+        assertSame(progress, registry.getProgress(43));
+        registry.unregister(progress);
+        assertNotNull(registry.register(43, "delete"));
+        registry.unregister(registry.getProgress(43));
+    }
+
+    @Test
+    public void testRegistryPublishesMXBean() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        DeletionProgressRegistry registry = new DeletionProgressRegistry(server);
+        DeletionProgress progress = registry.register(7, "delete");
+        progress.setPlanned(2, 200);
+        progress.setState(DeletionProgress.State.DELETING);
+
+        ObjectName name = DeletionProgressRegistry.getObjectName(7);
+        assertTrue(server.isRegistered(name));
+        assertEquals("DELETING", server.getAttribute(name, "State"));
+        assertEquals(200L, server.getAttribute(name, "PlannedBytes"));
+        assertEquals(0, server.getAttribute(name, "Percent"));
+
+        registry.unregister(progress);
+        assertFalse(server.isRegistered(name));
+    }
+}
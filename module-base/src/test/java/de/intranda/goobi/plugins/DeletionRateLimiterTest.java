@@ -0,0 +1,57 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import de.intranda.goobi.plugins.DeletionRateLimiter.TokenBucket;
+
+public class DeletionRateLimiterTest {
+
+    @Test
+    public void testUnlimited() throws Exception {
+        DeletionRateLimiter limiter = new DeletionRateLimiter();
+        limiter.configure(0, 0);
+        limiter.acquireDeletes(1_000_000);
+        limiter.acquireMetadataOperations(1_000_000);
+        assertEquals(0, limiter.getThrottledDeletes());
+        assertEquals(0, limiter.getDeleteWaitMillis());
+    }
+
+    @Test
+    public void testReserveBeyondBurst() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.setRate(100);
+        // the burst of one second is free
+        assertEquals(0, bucket.reserve(100));
+        // the next 50 permits take half a second
+        long wait = bucket.reserve(50);
+        assertTrue("wait was " + wait, wait > 400_000_000L && wait <= 500_000_000L);
+        // following callers wait behind the debt
+        assertTrue(bucket.reserve(1) > wait);
+    }
+
+    @Test
+    public void testThrottleWaitIsReported() throws Exception {
+        DeletionRateLimiter limiter = new DeletionRateLimiter();
+        limiter.configure(1000, 0);
+        long start = System.nanoTime();
+        limiter.acquireDeletes(1000);
+        limiter.acquireDeletes(100);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 90);
+        assertEquals(1, limiter.getThrottledDeletes());
+        assertTrue(limiter.getDeleteWaitMillis() >= 90);
+        assertEquals(0, limiter.getThrottledMetadataOperations());
+    }
+
+    @Test
+    public void testSameRateKeepsState() {
+        TokenBucket bucket = new TokenBucket();
+        bucket.setRate(10);
+        bucket.reserve(10);
+        bucket.setRate(10);
+        assertTrue(bucket.reserve(1) > 0);
+    }
+}
@@ -0,0 +1,139 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskPressureWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** large enough that the freed bytes lower the usage less than the 5% of every deletion in reclaim() */
+    private static final long TOTAL_SPACE = 100000;
+
+    private final Set<String> targetTypes = Collections.singleton(ProcessSizeIndex.MASTER);
+
+    private Path metadata;
+
+    private ProcessSizeIndex index;
+
+    private double usage;
+
+    private final List<Integer> attempts = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        metadata = folder.newFolder("metadata").toPath();
+        for (int id = 1; id <= 5; id++) {
+            Path file = metadata.resolve(id + "/images/master_title_media/00000001.tif");
+            Files.createDirectories(file.getParent());
+            Files.write(file, new byte[id * 100]);
+        }
+        // the largest process in total, but its export folder is not deleted
+        Path export = metadata.resolve("1/export/title.pdf");
+        Files.createDirectories(export.getParent());
+        Files.write(export, new byte[10000]);
+        index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+    }
+
+    /**
+     * every deletion frees 5 percent, process 3 has no reachable deletion task and the deletion of process 5 keeps all files
+     */
+    private boolean reclaim(int processId) {
+        attempts.add(processId);
+        if (processId == 3) {
+            return false;
+        }
+        if (processId != 5) {
+            try {
+                Files.delete(metadata.resolve(processId + "/images/master_title_media/00000001.tif"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            usage -= 5;
+        }
+        return true;
+    }
+
+    @Test
+    public void testNothingBelowHighWaterMark() throws Exception {
+        usage = 89;
+        DiskPressureWatcher watcher = new DiskPressureWatcher(index, () -> usage, this::reclaim, targetTypes, 90, 80, TOTAL_SPACE);
+        assertEquals(0, watcher.check());
+        assertEquals(0, attempts.size());
+    }
+
+    @Test
+    public void testLargestProcessesUntilLowWaterMark() throws Exception {
+        usage = 92;
+        DiskPressureWatcher watcher = new DiskPressureWatcher(index, () -> usage, this::reclaim, targetTypes, 90, 80, TOTAL_SPACE);
+        assertEquals(3, watcher.check());
+        // ranked by the bytes of the master folders, process 1 is the largest one in total
+        assertEquals(Arrays.asList(5, 4, 3, 2, 1), attempts);
+        assertEquals(77, usage, 0.001);
+        assertEquals(3, watcher.getReclaimedProcesses());
+        assertEquals(0, index.getSizes(4).getBytes(ProcessSizeIndex.MASTER));
+    }
+
+    @Test
+    public void testSkippedProcessIsNotTriedAgain() throws Exception {
+        usage = 91;
+        DiskPressureWatcher watcher = new DiskPressureWatcher(index, () -> usage, this::reclaim, targetTypes, 90, 85, TOTAL_SPACE);
+        assertEquals(2, watcher.check());
+        assertEquals(Arrays.asList(5, 4, 3, 2), attempts);
+        usage = 95;
+        attempts.clear();
+        assertEquals(1, watcher.check());
+        // process 3 has no reachable task and the deletion of process 5 freed nothing
+        assertEquals(Arrays.asList(1), attempts);
+    }
+
+    @Test
+    public void testFoldersInTrashCountAsFreed() throws Exception {
+        Path trash = folder.newFolder("trash").toPath();
+        // the folder is only moved, the usage of the file system stays the same until the trash is emptied
+        DiskPressureWatcher.ProcessReclaimer moveToTrash = processId -> {
+            attempts.add(processId);
+            try {
+                Files.move(metadata.resolve(processId + "/images/master_title_media"), trash.resolve(String.valueOf(processId)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        };
+        usage = 92;
+        // 500 and 400 bytes of 10000 free 9%
+        DiskPressureWatcher watcher = new DiskPressureWatcher(index, () -> usage, moveToTrash, targetTypes, 90, 85, 10000);
+        assertEquals(2, watcher.check());
+        assertEquals(Arrays.asList(5, 4), attempts);
+    }
+
+    @Test
+    public void testRankingOfSeveralTypes() throws Exception {
+        List<ProcessSizeIndex.ProcessSizes> largest = index.getLargestProcesses(Arrays.asList(ProcessSizeIndex.MASTER, ProcessSizeIndex.EXPORT), 2);
+        assertEquals(2, largest.size());
+        assertEquals(1, largest.get(0).getProcessId());
+        assertEquals(10100, largest.get(0).getBytes(Arrays.asList(ProcessSizeIndex.MASTER, ProcessSizeIndex.EXPORT)));
+        assertEquals(5, largest.get(1).getProcessId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidWaterMarks() {
+        new DiskPressureWatcher(index, () -> usage, this::reclaim, targetTypes, 80, 90, TOTAL_SPACE);
+    }
+}
@@ -0,0 +1,85 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExportVerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExportVerifier verifier;
+
+    private Path master;
+
+    private Path export;
+
+    private long totalBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        verifier = new ExportVerifier(ExportVerifier.DEFAULT_ALGORITHM, 2);
+        master = folder.newFolder("master").toPath();
+        export = folder.newFolder("export").toPath();
+        Random random = new Random(1);
+        for (int i = 0; i < 10; i++) {
+            // larger than the buffer for some files
+            byte[] content = new byte[i * 300_000 + 1];
+            random.nextBytes(content);
+            Files.write(master.resolve(i + ".tif"), content);
+            Files.write(export.resolve(i + ".tif"), content);
+            totalBytes += content.length;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        verifier.close();
+    }
+
+    @Test
+    public void testIdenticalCopy() throws Exception {
+        assertTrue(verifier.verify(master, export, path -> true).isEmpty());
+        assertEquals(2 * totalBytes, verifier.getHashedBytes().sum());
+        // not existing source folder
+        assertTrue(verifier.verify(master.resolve("missing"), export, path -> true).isEmpty());
+    }
+
+    @Test
+    public void testMissingAndSize() throws Exception {
+        Files.delete(export.resolve("3.tif"));
+        Files.write(export.resolve("4.tif"), new byte[] { 1, 2, 3 });
+        List<String> mismatches = verifier.verify(master, export, path -> true);
+        assertEquals(2, mismatches.size());
+        // nothing was hashed
+        assertEquals(0, verifier.getHashedBytes().sum());
+        // the filter skips the missing files
+        assertTrue(verifier.verify(master, export, path -> path.toString().startsWith("1")).isEmpty());
+    }
+
+    @Test
+    public void testChecksum() throws Exception {
+        byte[] content = Files.readAllBytes(export.resolve("7.tif"));
+        content[content.length / 2]++;
+        Files.write(export.resolve("7.tif"), content);
+        List<String> mismatches = verifier.verify(master, export, path -> true);
+        assertEquals(1, mismatches.size());
+        assertTrue(mismatches.get(0).startsWith("7.tif"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm() {
+        new ExportVerifier("CRC-0", 1);
+    }
+}
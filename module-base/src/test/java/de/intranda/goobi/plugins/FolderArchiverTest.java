@@ -0,0 +1,104 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FolderArchiverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FolderArchiver archiver;
+
+    private Path source;
+
+    private byte[] image;
+
+    @Before
+    public void setUp() throws Exception {
+        archiver = new FolderArchiver(folder.newFolder("archive").toPath(), 2);
+        source = folder.newFolder("alto").toPath();
+        for (int i = 0; i < 20; i++) {
+            Files.write(source.resolve(String.format("%08d.xml", i)), "<alto><String CONTENT=\"text\"/></alto>\n".repeat(100).getBytes(StandardCharsets.UTF_8));
+        }
+        image = new byte[100_000];
+        new Random(1).nextBytes(image);
+        Files.createDirectories(source.resolve("sub"));
+        Files.write(source.resolve("sub/00000001.tif"), image);
+    }
+
+    @After
+    public void tearDown() {
+        archiver.close();
+    }
+
+    @Test
+    public void testArchive() throws Exception {
+        Path archiveFile = archiver.getArchiveFile(1, "alto");
+        assertEquals(21, archiver.archive(source, true, path -> true, archiveFile));
+        assertFalse(Files.exists(archiveFile.resolveSibling("alto.zip.part")));
+
+        try (ZipFile zip = new ZipFile(archiveFile.toFile())) {
+            assertEquals(21, Collections.list(zip.getEntries()).size());
+            ZipArchiveEntry xml = zip.getEntry("00000005.xml");
+            assertNotNull(xml);
+            assertEquals(ZipEntry.DEFLATED, xml.getMethod());
+            assertTrue(xml.getCompressedSize() < xml.getSize());
+            ZipArchiveEntry tif = zip.getEntry("sub/00000001.tif");
+            assertEquals(ZipEntry.STORED, tif.getMethod());
+            try (InputStream in = zip.getInputStream(tif)) {
+                assertTrue(Arrays.equals(image, in.readAllBytes()));
+            }
+        }
+    }
+
+    @Test
+    public void testArchiveWithFilter() throws Exception {
+        Path archiveFile = archiver.getArchiveFile(1, "additional:alto");
+        assertEquals(1, archiver.archive(source, true, path -> path.toString().endsWith(".tif"), archiveFile));
+        assertEquals("additional_alto.zip", archiveFile.getFileName().toString());
+        // files of sub folders are skipped if not recursive
+        assertEquals(0, archiver.archive(source, false, path -> path.toString().endsWith(".tif"), archiver.getArchiveFile(2, "alto")));
+        assertFalse(Files.exists(archiver.getArchiveFile(2, "alto")));
+    }
+
+    @Test
+    public void testVerifyDetectsMismatch() throws Exception {
+        Path archiveFile = archiver.getArchiveFile(1, "alto");
+        archiver.archive(source, false, path -> true, archiveFile);
+        try {
+            FolderArchiver.verify(archiveFile, Collections.singletonMap("00000000.xml", 42L));
+            fail("entry count and checksum do not match");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCompressible() {
+        assertTrue(FolderArchiver.isCompressible(source.resolve("00000001.XML")));
+        assertFalse(FolderArchiver.isCompressible(source.resolve("00000001.jp2")));
+        assertFalse(FolderArchiver.isCompressible(source.resolve("README")));
+    }
+}
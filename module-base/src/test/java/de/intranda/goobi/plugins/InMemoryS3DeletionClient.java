@@ -0,0 +1,79 @@
+package de.intranda.goobi.plugins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for an S3 bucket that counts the requests it receives
+ */
+public class InMemoryS3DeletionClient implements S3DeletionClient {
+
+    private final NavigableSet<String> objects = new ConcurrentSkipListSet<>();
+
+    private final AtomicInteger listRequests = new AtomicInteger();
+    private final AtomicInteger deleteRequests = new AtomicInteger();
+    private final AtomicInteger throttledRequests = new AtomicInteger();
+
+    // number of delete requests that get rejected before requests succeed
+    private final AtomicInteger throttleNextRequests = new AtomicInteger();
+
+    public void putObject(String key) {
+        objects.add(key);
+    }
+
+    public int countObjects(String prefix) {
+        return objects.subSet(prefix, prefix + Character.MAX_VALUE).size();
+    }
+
+    public void throttleNextRequests(int number) {
+        throttleNextRequests.set(number);
+    }
+
+    public int getListRequests() {
+        return listRequests.get();
+    }
+
+    public int getDeleteRequests() {
+        return deleteRequests.get();
+    }
+
+    public int getThrottledRequests() {
+        return throttledRequests.get();
+    }
+
+    @Override
+    public ObjectPage listObjects(String prefix, String continuationToken) throws IOException {
+        listRequests.incrementAndGet();
+        String start = continuationToken == null ? prefix : continuationToken;
+        List<String> keys = new ArrayList<>();
+        String next = null;
+        for (String key : objects.tailSet(start, continuationToken == null)) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (keys.size() == S3BatchDeleter.MAX_KEYS_PER_REQUEST) {
+                next = keys.get(keys.size() - 1);
+                break;
+            }
+            keys.add(key);
+        }
+        return new ObjectPage(keys, next);
+    }
+
+    @Override
+    public void deleteObjects(List<String> keys) throws IOException {
+        deleteRequests.incrementAndGet();
+        if (keys.size() > S3BatchDeleter.MAX_KEYS_PER_REQUEST) {
+            throw new IOException("Too many keys in one request: " + keys.size());
+        }
+        if (throttleNextRequests.getAndDecrement() > 0) {
+            throttledRequests.incrementAndGet();
+            throw new S3ThrottlingException("SlowDown", null);
+        }
+        objects.removeAll(keys);
+    }
+}
@@ -0,0 +1,92 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.intranda.goobi.plugins.MetadataBackupRetention.Backup;
+
+public class MetadataBackupRetentionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path processFolder;
+
+    private final Instant now = Instant.parse("2024-06-01T12:00:00Z");
+
+    @Before
+    public void setUp() throws Exception {
+        processFolder = folder.newFolder("1").toPath();
+        createFile("meta.xml", 0);
+        createFile("meta_anchor.xml", 0);
+        // meta.xml.1 is the newest backup, meta.xml.5 the oldest
+        for (int i = 1; i <= 5; i++) {
+            createFile("meta.xml." + i, i * 10);
+            createFile("meta_anchor.xml." + i, i * 10);
+        }
+        createFile("meta.xml.2024-02-22-120000", 100);
+        // other files with a similar name are not backups
+        createFile("meta.xml.bak.txt", 100);
+        createFile("meta.xml.1.txt", 100);
+        createFile("other.xml.1", 100);
+    }
+
+    private void createFile(String name, int ageInDays) throws Exception {
+        Path file = Files.write(processFolder.resolve(name), new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(file, FileTime.from(now.minus(Duration.ofDays(ageInDays))));
+    }
+
+    @Test
+    public void testKeepNewest() throws Exception {
+        List<Backup> expired = new MetadataBackupRetention(2, null).findExpiredBackups(processFolder, now);
+        // the backup with a timestamp is the oldest
+        assertEquals(7, expired.size());
+        for (Backup backup : expired) {
+            String name = backup.getPath().getFileName().toString();
+            assertFalse(name, name.endsWith(".1") || name.endsWith(".2"));
+        }
+    }
+
+    @Test
+    public void testKeepYounger() throws Exception {
+        List<Backup> expired = new MetadataBackupRetention(0, Duration.ofDays(25)).findExpiredBackups(processFolder, now);
+        // backups 3, 4 and 5 of both files and the backup with a timestamp
+        assertEquals(7, expired.size());
+    }
+
+    @Test
+    public void testKeepNewestOrYounger() throws Exception {
+        List<Backup> expired = new MetadataBackupRetention(3, Duration.ofDays(15)).findExpiredBackups(processFolder, now);
+        // 4 and 5 of both files and the backup with a timestamp
+        assertEquals(5, expired.size());
+    }
+
+    @Test
+    public void testDeleteExpiredBackups() throws Exception {
+        DeletionCounter counter = new DeletionCounter();
+        new MetadataBackupRetention(1, null).deleteExpiredBackups(processFolder, counter);
+        assertEquals(9, counter.getFiles());
+        assertEquals(27, counter.getBytes());
+        assertTrue(Files.exists(processFolder.resolve("meta.xml")));
+        assertTrue(Files.exists(processFolder.resolve("meta.xml.1")));
+        assertTrue(Files.exists(processFolder.resolve("meta_anchor.xml.1")));
+        assertTrue(Files.exists(processFolder.resolve("other.xml.1")));
+        assertTrue(Files.exists(processFolder.resolve("meta.xml.bak.txt")));
+        assertTrue(Files.exists(processFolder.resolve("meta.xml.1.txt")));
+        assertFalse(Files.exists(processFolder.resolve("meta.xml.2024-02-22-120000")));
+        assertFalse(Files.exists(processFolder.resolve("meta.xml.2")));
+    }
+}
@@ -0,0 +1,117 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import de.intranda.goobi.plugins.MetadataRemover.Scope;
+import ugh.dl.DigitalDocument;
+import ugh.dl.DocStruct;
+import ugh.dl.DocStructType;
+import ugh.dl.Metadata;
+import ugh.dl.MetadataType;
+
+public class MetadataRemoverTest {
+
+    private final List<Object> mocks = new ArrayList<>();
+
+    private Metadata metadata(String name) {
+        MetadataType type = EasyMock.createMock(MetadataType.class);
+        EasyMock.expect(type.getName()).andReturn(name).anyTimes();
+        Metadata md = EasyMock.createMock(Metadata.class);
+        EasyMock.expect(md.getType()).andReturn(type).anyTimes();
+        mocks.add(type);
+        mocks.add(md);
+        return md;
+    }
+
+    /**
+     * Create an element, the metadata in removed are expected to be removed, all others must be kept
+     */
+    private DocStruct element(boolean anchor, List<Metadata> kept, List<Metadata> removed, DocStruct... children) {
+        DocStructType type = EasyMock.createMock(DocStructType.class);
+        EasyMock.expect(type.isAnchor()).andReturn(anchor).anyTimes();
+        EasyMock.expect(type.getName()).andReturn(anchor ? "Periodical" : "PeriodicalVolume").anyTimes();
+        DocStruct element = EasyMock.createMock(DocStruct.class);
+        List<Metadata> metadata = new ArrayList<>(kept);
+        metadata.addAll(removed);
+        EasyMock.expect(element.getType()).andReturn(type).anyTimes();
+        EasyMock.expect(element.getAllMetadata()).andReturn(metadata).anyTimes();
+        EasyMock.expect(element.getAllChildren()).andReturn(children.length == 0 ? null : Arrays.asList(children)).anyTimes();
+        for (Metadata md : removed) {
+            EasyMock.expect(element.removeMetadata(md)).andReturn(true).once();
+        }
+        mocks.add(type);
+        mocks.add(element);
+        return element;
+    }
+
+    private DigitalDocument document(DocStruct logical, DocStruct physical) {
+        DigitalDocument document = EasyMock.createMock(DigitalDocument.class);
+        EasyMock.expect(document.getLogicalDocStruct()).andReturn(logical).anyTimes();
+        EasyMock.expect(document.getPhysicalDocStruct()).andReturn(physical).anyTimes();
+        mocks.add(document);
+        return document;
+    }
+
+    private static Map<Scope, Set<String>> scopes(Object... scopeAndNames) {
+        Map<Scope, Set<String>> scopes = new EnumMap<>(Scope.class);
+        for (int i = 0; i < scopeAndNames.length; i += 2) {
+            scopes.computeIfAbsent((Scope) scopeAndNames[i], s -> new HashSet<>()).add((String) scopeAndNames[i + 1]);
+        }
+        return scopes;
+    }
+
+    @Test
+    public void testAllScopesInOnePass() {
+        DocStruct chapter = element(false, Collections.emptyList(), Arrays.asList(metadata("singleDigCollection")));
+        DocStruct volume = element(false, Arrays.asList(metadata("DocLanguage")),
+                Arrays.asList(metadata("TitleDocMain"), metadata("singleDigCollection")), chapter);
+        DocStruct anchor = element(true, Arrays.asList(metadata("TitleDocMain")), Arrays.asList(metadata("DocLanguage")), volume);
+        DocStruct page = element(false, Arrays.asList(metadata("logicalPageNumber")), Arrays.asList(metadata("_urn")));
+        DocStruct boundBook = element(false, Collections.emptyList(), Collections.emptyList(), page);
+        DigitalDocument document = document(anchor, boundBook);
+        EasyMock.replay(mocks.toArray());
+
+        MetadataRemover remover = new MetadataRemover(scopes(Scope.TOP, "TitleDocMain", Scope.ANCHOR, "DocLanguage", Scope.ALL_LOGICAL,
+                "singleDigCollection", Scope.PHYSICAL, "_urn"));
+        assertFalse(remover.isTopOnly());
+        assertEquals(5, remover.removeMetadata(document));
+        EasyMock.verify(mocks.toArray());
+    }
+
+    @Test
+    public void testTopOnlySkipsChildren() {
+        DocStruct chapter = element(false, Arrays.asList(metadata("TitleDocMain")), Collections.emptyList());
+        DocStruct monograph = element(false, Collections.emptyList(), Arrays.asList(metadata("TitleDocMain")), chapter);
+        DigitalDocument document = document(monograph, null);
+        EasyMock.replay(mocks.toArray());
+
+        MetadataRemover remover = new MetadataRemover(scopes(Scope.TOP, "TitleDocMain"));
+        assertTrue(remover.isTopOnly());
+        assertEquals(1, remover.removeMetadata(document));
+        EasyMock.verify(mocks.toArray());
+    }
+
+    @Test
+    public void testScopeFromConfig() {
+        assertEquals(Scope.TOP, Scope.fromConfig(null));
+        assertEquals(Scope.ALL_LOGICAL, Scope.fromConfig("all-logical"));
+        assertEquals(Scope.PHYSICAL, Scope.fromConfig(" physical "));
+        assertEquals(Scope.TOP, Scope.fromConfig(" "));
+        assertNull(Scope.fromConfig("pages"));
+    }
+}
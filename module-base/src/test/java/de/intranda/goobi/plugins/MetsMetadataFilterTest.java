@@ -0,0 +1,92 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetsMetadataFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path metaXml;
+
+    @Before
+    public void setUp() throws Exception {
+        metaXml = folder.getRoot().toPath().resolve("meta.xml");
+        Files.copy(Paths.get("src/test/resources/meta_anchor.xml"), metaXml, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String read() throws Exception {
+        return new String(Files.readAllBytes(metaXml), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFindLogicalTop() throws Exception {
+        MetsMetadataFilter filter = new MetsMetadataFilter();
+        assertEquals("DMDLOG_0001", filter.findLogicalTopDmdId(metaXml, "Newspaper"::equals));
+        assertEquals("DMDLOG_0000", filter.findLogicalTopDmdId(metaXml, type -> false));
+    }
+
+    @Test
+    public void testRemoveMetadataFromFirstChildOfAnchor() throws Exception {
+        MetsMetadataFilter filter = new MetsMetadataFilter();
+        int removed = filter.removeMetadata(metaXml, new HashSet<>(Arrays.asList("singleDigCollection", "DocLanguage")), "Newspaper"::equals);
+        assertEquals(3, removed);
+
+        String content = read();
+        assertFalse(content.contains("Periodicals"));
+        assertFalse(content.contains("DocLanguage"));
+        // anchor, issue, persons and groups are untouched
+        assertTrue(content.contains("<goobi:metadata name=\"TitleDocMain\">Volume 1900</goobi:metadata>"));
+        assertTrue(content.contains("<goobi:lastName>Doe</goobi:lastName>"));
+        assertTrue(content.contains("<goobi:metadata name=\"singleDigCollection\">Newspapers</goobi:metadata>\n                            </goobi:metadata>"));
+        assertEquals(3, content.split("singleDigCollection\">Newspapers", -1).length - 1);
+    }
+
+    @Test
+    public void testNothingToRemove() throws Exception {
+        MetsMetadataFilter filter = new MetsMetadataFilter();
+        long modified = Files.getLastModifiedTime(metaXml).toMillis();
+        String before = read();
+        assertEquals(0, filter.removeMetadata(metaXml, Collections.singleton("PublicationYear"), "Newspaper"::equals));
+        assertEquals(before, read());
+        assertEquals(modified, Files.getLastModifiedTime(metaXml).toMillis());
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testPermissionsAndBackups() throws Exception {
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(metaXml, permissions);
+        String original = read();
+        Files.write(folder.getRoot().toPath().resolve("meta.xml.1"), "first backup".getBytes(StandardCharsets.UTF_8));
+        Files.write(folder.getRoot().toPath().resolve("meta.xml.2"), "second backup".getBytes(StandardCharsets.UTF_8));
+
+        MetsMetadataFilter filter = new MetsMetadataFilter(2);
+        assertEquals(3, filter.removeMetadata(metaXml, new HashSet<>(Arrays.asList("singleDigCollection", "DocLanguage")), "Newspaper"::equals));
+
+        assertEquals(permissions, Files.getPosixFilePermissions(metaXml));
+        // the previous file is the newest backup, the oldest one is dropped
+        assertEquals(original, new String(Files.readAllBytes(folder.getRoot().toPath().resolve("meta.xml.1")), StandardCharsets.UTF_8));
+        assertEquals("first backup", new String(Files.readAllBytes(folder.getRoot().toPath().resolve("meta.xml.2")), StandardCharsets.UTF_8));
+        assertEquals(3, folder.getRoot().list().length);
+    }
+}
@@ -0,0 +1,189 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelDirectoryDeleterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path createTree() throws IOException {
+        File root = folder.newFolder("images");
+        for (String subfolder : new String[] { "master_fixture_media", "fixture_media", "fixture_media/nested" }) {
+            File directory = new File(root, subfolder);
+            directory.mkdirs();
+            for (int i = 1; i <= 150; i++) {
+                new File(directory, String.format("%08d.tif", i)).createNewFile();
+            }
+        }
+        return root.toPath();
+    }
+
+    @Test
+    public void testDeleteTree() throws Exception {
+        Path root = createTree();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(4)) {
+            deleter.deleteDir(root.resolve("fixture_media"));
+        }
+        assertFalse(Files.exists(root.resolve("fixture_media")));
+        assertTrue(Files.exists(root.resolve("master_fixture_media/00000001.tif")));
+    }
+
+    @Test
+    public void testDeleteNonExistingDirectory() throws Exception {
+        Path root = createTree();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(2)) {
+            deleter.deleteDir(root.resolve("missing"));
+        }
+        assertTrue(Files.exists(root.resolve("fixture_media")));
+    }
+
+    @Test
+    public void testSymbolicLinkIsNotFollowed() throws Exception {
+        Path root = createTree();
+        Path target = root.resolve("master_fixture_media");
+        Path directory = root.resolve("fixture_media");
+        Files.createSymbolicLink(directory.resolve("link"), target);
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(2)) {
+            deleter.deleteDir(directory);
+        }
+        assertFalse(Files.exists(directory));
+        assertTrue(Files.exists(target.resolve("00000150.tif")));
+    }
+
+    @Test
+    public void testDeleteLargeDirectory() throws Exception {
+        Path directory = folder.newFolder("large").toPath();
+        // more files than the pending tasks can hold at once
+        for (int i = 1; i <= 5000; i++) {
+            Files.write(directory.resolve(String.format("%08d.tif", i)), new byte[] { 1, 2 });
+        }
+        DeletionCounter counter = new DeletionCounter();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(4)) {
+            deleter.deleteDir(directory, counter);
+        }
+        assertFalse(Files.exists(directory));
+        assertEquals(5000, counter.getFiles());
+        assertEquals(10000, counter.getBytes());
+    }
+
+    @Test
+    public void testDeleteFiles() throws Exception {
+        Path root = createTree();
+        Path directory = root.resolve("fixture_media");
+        Files.createFile(directory.resolve("meta.xml"));
+        DeletionCounter counter = new DeletionCounter();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(2)) {
+            deleter.deleteFiles(directory, entry -> entry.getFileName().toString().endsWith(".tif"), counter);
+        }
+        assertEquals(150, counter.getFiles());
+        assertFalse(Files.exists(directory.resolve("00000001.tif")));
+        assertTrue(Files.exists(directory.resolve("meta.xml")));
+        assertTrue(Files.exists(directory.resolve("nested/00000001.tif")));
+    }
+
+    @Test
+    public void testRelativeDeletion() throws Exception {
+        Path root = createTree();
+        Path target = root.resolve("master_fixture_media");
+        Path directory = root.resolve("fixture_media");
+        Files.createSymbolicLink(directory.resolve("nested/link"), target);
+        DeletionCounter counter = new DeletionCounter();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(4, true)) {
+            deleter.deleteDir(directory, counter);
+        }
+        assertFalse(Files.exists(directory));
+        assertTrue(Files.exists(target.resolve("00000150.tif")));
+        // 300 images and the link
+        assertEquals(301, counter.getFiles());
+    }
+
+    @Test
+    public void testRelativeDeleteFiles() throws Exception {
+        Path root = createTree();
+        Path directory = root.resolve("fixture_media");
+        Files.createFile(directory.resolve("meta.xml"));
+        DeletionCounter counter = new DeletionCounter();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(2, true)) {
+            deleter.deleteFiles(directory, entry -> !entry.getFileName().toString().equals("meta.xml"), counter);
+        }
+        assertEquals(150, counter.getFiles());
+        assertTrue(Files.exists(directory.resolve("meta.xml")));
+        assertTrue(Files.exists(directory.resolve("nested/00000001.tif")));
+    }
+
+    @Test
+    public void testDeleteMatching() throws Exception {
+        Path root = createTree();
+        Path directory = root.resolve("fixture_media");
+        Files.createFile(directory.resolve("00000001.jpg"));
+        Files.createDirectories(directory.resolve("tmp"));
+        Files.createFile(directory.resolve("tmp/conversion.tmp"));
+        ContentFilter filter = new ContentFilter(DeletionTarget.MEDIA, Arrays.asList("*.tif", "*.tmp"), Arrays.asList("00000001.*"));
+        DeletionCounter counter = new DeletionCounter();
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(4)) {
+            deleter.deleteMatching(directory, filter, counter);
+        }
+        // 149 images in each folder and the temporary file
+        assertEquals(2 * 149 + 1, counter.getFiles());
+        assertTrue(Files.exists(directory.resolve("00000001.tif")));
+        assertTrue(Files.exists(directory.resolve("00000001.jpg")));
+        assertTrue(Files.exists(directory.resolve("nested/00000001.tif")));
+        assertFalse(Files.exists(directory.resolve("nested/00000002.tif")));
+        // emptied folders are removed
+        assertFalse(Files.exists(directory.resolve("tmp")));
+    }
+
+    @Test
+    public void testNothingIsDeletedAfterFailure() throws Exception {
+        Path root = folder.newFolder("content").toPath();
+        for (String subfolder : new String[] { "a", "b", "c", "d", "e", "f", "g", "h" }) {
+            Files.createDirectories(root.resolve(subfolder));
+            for (int i = 1; i <= 50; i++) {
+                Files.createFile(root.resolve(subfolder).resolve(String.format("%08d.tif", i)));
+            }
+        }
+        AtomicInteger checked = new AtomicInteger();
+        ContentFilter filter = new ContentFilter(DeletionTarget.MEDIA, Arrays.asList("*"), Collections.emptyList()) {
+            @Override
+            public boolean matches(Path relativePath) {
+                if (relativePath.startsWith("a")) {
+                    throw new IllegalStateException("broken file " + relativePath);
+                }
+                checked.incrementAndGet();
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        try (ParallelDirectoryDeleter deleter = new ParallelDirectoryDeleter(4)) {
+            try {
+                deleter.deleteMatching(root, filter, new DeletionCounter());
+                fail();
+            } catch (IllegalStateException e) {
+                // all other tasks are finished or cancelled when the error is thrown
+                int checkedOnFailure = checked.get();
+                Thread.sleep(200);
+                assertEquals(checkedOnFailure, checked.get());
+            }
+        }
+    }
+}
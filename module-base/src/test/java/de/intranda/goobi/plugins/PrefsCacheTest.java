@@ -0,0 +1,133 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ugh.dl.MetadataType;
+import ugh.dl.Prefs;
+import ugh.exceptions.PreferencesException;
+
+public class PrefsCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger parsed = new AtomicInteger();
+
+    private Prefs parse(Path rulesetFile) {
+        parsed.incrementAndGet();
+        Prefs prefs = new Prefs();
+        MetadataType type = new MetadataType();
+        type.setName("TitleDocMain");
+        prefs.addMetadataType(type);
+        return prefs;
+    }
+
+    @Test
+    public void testCachedUntilModified() throws Exception {
+        Path ruleset = folder.newFile("ruleset.xml").toPath();
+        PrefsCache cache = new PrefsCache(2, this::parse);
+
+        PrefsCache.CachedPrefs first = cache.get(ruleset);
+        assertSame(first, cache.get(ruleset));
+        assertEquals(1, parsed.get());
+        assertEquals(1, cache.getHits());
+
+        MetadataType type = first.getMetadataType("TitleDocMain");
+        assertSame(type, first.getMetadataType("TitleDocMain"));
+        assertNull(first.getMetadataType("unknown"));
+
+        Files.setLastModifiedTime(ruleset, FileTime.fromMillis(Files.getLastModifiedTime(ruleset).toMillis() + 10_000));
+        PrefsCache.CachedPrefs second = cache.get(ruleset);
+        assertNotSame(first, second);
+        assertEquals(2, parsed.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        Path a = folder.newFile("a.xml").toPath();
+        Path b = folder.newFile("b.xml").toPath();
+        Path c = folder.newFile("c.xml").toPath();
+        PrefsCache cache = new PrefsCache(2, this::parse);
+        cache.get(a);
+        cache.get(b);
+        // a was used last, so b gets removed
+        cache.get(a);
+        cache.get(c);
+        assertEquals(2, cache.size());
+        assertEquals(3, parsed.get());
+        cache.get(a);
+        assertEquals(3, parsed.get());
+        cache.get(b);
+        assertEquals(4, parsed.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsParseOnce() throws Exception {
+        Path ruleset = folder.newFile("ruleset.xml").toPath();
+        CountDownLatch release = new CountDownLatch(1);
+        PrefsCache cache = new PrefsCache(2, file -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return parse(file);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<PrefsCache.CachedPrefs>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.get(ruleset)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<PrefsCache.CachedPrefs> result : results) {
+                assertSame(results.get(0).get(), result.get());
+            }
+            assertEquals(1, parsed.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailedParseIsNotCached() throws Exception {
+        Path ruleset = folder.newFile("ruleset.xml").toPath();
+        AtomicInteger calls = new AtomicInteger();
+        PrefsCache cache = new PrefsCache(2, file -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new PreferencesException("broken");
+            }
+            return parse(file);
+        });
+        try {
+            cache.get(ruleset);
+            fail("parsing must fail");
+        } catch (PreferencesException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+        cache.get(ruleset);
+        assertEquals(1, parsed.get());
+    }
+}
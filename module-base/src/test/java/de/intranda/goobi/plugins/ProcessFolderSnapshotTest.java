@@ -0,0 +1,78 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProcessFolderSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path processFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        processFolder = folder.newFolder("1").toPath();
+        Files.createDirectories(processFolder.resolve("images/master_test_media"));
+        Files.createDirectories(processFolder.resolve("thumbs"));
+        Files.createFile(processFolder.resolve("meta.xml"));
+    }
+
+    @Test
+    public void testResolveTargets() throws Exception {
+        ProcessFolderSnapshot snapshot = ProcessFolderSnapshot.create(processFolder, processFolder.resolve("images"), processFolder.resolve("ocr"));
+        assertTrue(snapshot.exists(processFolder));
+        assertTrue(snapshot.exists(processFolder.resolve("images")));
+        assertTrue(snapshot.exists(processFolder.resolve("images/master_test_media")));
+        assertTrue(snapshot.exists(processFolder.resolve("thumbs/")));
+        assertFalse(snapshot.exists(processFolder.resolve("images/test_media")));
+        assertFalse(snapshot.exists(processFolder.resolve("ocr")));
+        assertFalse(snapshot.exists(processFolder.resolve("ocr/test_alto")));
+        assertFalse(snapshot.exists(processFolder.resolve("validation")));
+    }
+
+    @Test
+    public void testDirectories() throws Exception {
+        ProcessFolderSnapshot snapshot = ProcessFolderSnapshot.create(processFolder, processFolder.resolve("images"), processFolder.resolve("ocr"));
+        assertTrue(snapshot.isDirectory(processFolder));
+        assertTrue(snapshot.isDirectory(processFolder.resolve("images/master_test_media")));
+        assertTrue(snapshot.isDirectory(processFolder.resolve("thumbs")));
+        assertFalse(snapshot.isDirectory(processFolder.resolve("meta.xml")));
+        assertFalse(snapshot.isDirectory(processFolder.resolve("ocr/test_alto")));
+        // the snapshot is used instead of the storage
+        Files.delete(processFolder.resolve("thumbs"));
+        assertTrue(snapshot.isDirectory(processFolder.resolve("thumbs")));
+    }
+
+    @Test
+    public void testSnapshotIsNotUpdated() throws Exception {
+        ProcessFolderSnapshot snapshot = ProcessFolderSnapshot.create(processFolder, processFolder.resolve("images"), processFolder.resolve("ocr"));
+        Files.createDirectories(processFolder.resolve("ocr/test_alto"));
+        assertFalse(snapshot.exists(processFolder.resolve("ocr/test_alto")));
+    }
+
+    @Test
+    public void testPathOutsideOfSnapshot() throws Exception {
+        ProcessFolderSnapshot snapshot = ProcessFolderSnapshot.create(processFolder, processFolder.resolve("images"), processFolder.resolve("ocr"));
+        Path external = folder.newFolder("external").toPath();
+        assertTrue(snapshot.exists(external));
+        assertFalse(snapshot.exists(external.resolve("missing")));
+    }
+
+    @Test
+    public void testMissingProcessFolder() throws Exception {
+        Path missing = processFolder.resolveSibling("2");
+        ProcessFolderSnapshot snapshot = ProcessFolderSnapshot.create(missing, missing.resolve("images"), missing.resolve("ocr"));
+        assertFalse(snapshot.exists(missing));
+        assertFalse(snapshot.exists(missing.resolve("images/master_test_media")));
+        assertFalse(snapshot.exists(missing.resolve("thumbs")));
+    }
+}
@@ -0,0 +1,64 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProcessPropertyDeleterTest {
+
+    private static List<Integer> ids(int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testSingleStatement() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(0);
+        assertEquals(3, new ProcessPropertyDeleter(recorder::connection).deleteProperties(Arrays.asList(4, 5, 6)));
+        assertEquals(Collections.singletonList("DELETE FROM prozesseeigenschaften WHERE prozesseeigenschaftenID IN (?, ?, ?)"),
+                recorder.statements);
+        assertEquals(Arrays.asList("executeUpdate", "commit", "close"), recorder.calls);
+        assertTrue(recorder.autoCommit);
+    }
+
+    @Test
+    public void testRoundTripsDoNotGrowWithNumberOfProperties() throws Exception {
+        for (int count : new int[] { 1, 10, 100, IdListTransaction.MAX_IDS_PER_STATEMENT }) {
+            RecordingConnection recorder = new RecordingConnection(0);
+            assertEquals(count, new ProcessPropertyDeleter(recorder::connection).deleteProperties(ids(count)));
+            assertEquals(Arrays.asList("executeUpdate", "commit", "close"), recorder.calls);
+        }
+    }
+
+    @Test
+    public void testNothingToDelete() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(0);
+        assertEquals(0, new ProcessPropertyDeleter(recorder::connection).deleteProperties(Collections.emptyList()));
+        assertTrue(recorder.calls.isEmpty());
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(0);
+        recorder.failUpdate = true;
+        try {
+            new ProcessPropertyDeleter(recorder::connection).deleteProperties(ids(IdListTransaction.MAX_IDS_PER_STATEMENT + 1));
+            fail("delete must fail");
+        } catch (SQLException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("executeUpdate", "rollback", "close"), recorder.calls);
+        assertTrue(recorder.autoCommit);
+    }
+}
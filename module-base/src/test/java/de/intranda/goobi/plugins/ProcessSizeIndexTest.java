@@ -0,0 +1,206 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProcessSizeIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path metadata;
+
+    @Before
+    public void setUp() throws Exception {
+        metadata = folder.newFolder("metadata").toPath();
+        createFile("1/images/master_title_media/00000001.tif", 300);
+        createFile("1/images/title_media/00000001.jpg", 50);
+        createFile("1/ocr/title_alto/00000001.xml", 20);
+        createFile("2/images/master_other_media/00000001.tif", 1000);
+        createFile("2/thumbs/other_media_800/00000001.jpg", 10);
+        createFile("3/meta.xml", 5);
+        Files.createDirectories(metadata.resolve("notAProcess/images/master_x_media"));
+    }
+
+    private void createFile(String path, int size) throws Exception {
+        Path file = metadata.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+    }
+
+    @Test
+    public void testFolderType() {
+        Map<String, String> folderNames = new LinkedHashMap<>();
+        folderNames.put("images/master_{processtitle}_media", ProcessSizeIndex.MASTER);
+        folderNames.put("images/{processtitle}_media", ProcessSizeIndex.MEDIA);
+        folderNames.put("images/{processtitle}_source", ProcessSizeIndex.SOURCE);
+        folderNames.put("ocr/{processtitle}_alto", "ocr/alto");
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME), folderNames);
+        assertEquals(ProcessSizeIndex.MASTER, index.getFolderType("images/master_title_media"));
+        assertEquals(ProcessSizeIndex.MEDIA, index.getFolderType("images/title_media"));
+        assertEquals(ProcessSizeIndex.SOURCE, index.getFolderType("images/title_source"));
+        assertEquals(ProcessSizeIndex.IMAGES, index.getFolderType("images/title_fallback"));
+        assertEquals("ocr/alto", index.getFolderType("ocr/title_alto"));
+        assertEquals("ocr/wc", index.getFolderType("ocr/title_wc"));
+        assertEquals(ProcessSizeIndex.THUMBS, index.getFolderType("thumbs/title_media_800"));
+        assertEquals(ProcessSizeIndex.EXPORT, index.getFolderType("export"));
+    }
+
+    @Test
+    public void testConfiguredFolderType() {
+        Map<String, String> folderNames = new LinkedHashMap<>();
+        folderNames.put("images/{processtitle}_orig", ProcessSizeIndex.MASTER);
+        folderNames.put("images/{processtitle}_tif", ProcessSizeIndex.MEDIA);
+        folderNames.put("ocr/{processtitle}_alto", "ocr/alto");
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME), folderNames);
+        assertEquals(ProcessSizeIndex.MASTER, index.getFolderType("images/title_orig"));
+        assertEquals(ProcessSizeIndex.MEDIA, index.getFolderType("images/title_tif"));
+        assertEquals(ProcessSizeIndex.IMAGES, index.getFolderType("images/title_media"));
+        assertEquals(ProcessSizeIndex.IMAGES, index.getFolderType("images/_tif"));
+    }
+
+    @Test
+    public void testCrawlAndLargestProcesses() {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        assertEquals(2, index.crawl(2));
+        assertEquals(1, index.crawl(2));
+        assertEquals(3, index.size());
+
+        List<ProcessSizeIndex.ProcessSizes> largest = index.getLargestProcesses(2);
+        assertEquals(2, largest.size());
+        assertEquals(2, largest.get(0).getProcessId());
+        assertEquals(1010, largest.get(0).getTotalBytes());
+        assertEquals(1, largest.get(1).getProcessId());
+        assertEquals(300, largest.get(1).getBytes(ProcessSizeIndex.MASTER));
+        assertEquals(1, largest.get(1).getFiles("ocr/alto"));
+        // files outside of the content folders are not counted
+        assertEquals(0, index.getSizes(3).getTotalBytes());
+    }
+
+    @Test
+    public void testRefreshFolderAfterDeletion() throws Exception {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        Path master = metadata.resolve("1/images/master_title_media");
+        Files.delete(master.resolve("00000001.tif"));
+        Files.delete(master);
+
+        index.refreshFolder(1, master);
+        ProcessSizeIndex.ProcessSizes sizes = index.getSizes(1);
+        assertEquals(0, sizes.getBytes(ProcessSizeIndex.MASTER));
+        assertEquals(70, sizes.getTotalBytes());
+
+        // unknown processes are not added
+        index.refreshFolder(4, metadata.resolve("4/images"));
+        assertNull(index.getSizes(4));
+    }
+
+    @Test
+    public void testCrawlerDoesNotOverwriteDeletion() throws Exception {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        // the crawler has measured process 1 while the deletion removed its master folder
+        ProcessSizeIndex.ProcessSizes crawled = index.getSizes(1);
+        ProcessSizeIndex.ProcessSizes measured = new ProcessSizeIndex.ProcessSizes(1, crawled.getUnits());
+        Path master = metadata.resolve("1/images/master_title_media");
+        Files.delete(master.resolve("00000001.tif"));
+        Files.delete(master);
+        index.refreshFolder(1, master);
+
+        assertFalse(index.replace(1, crawled, measured));
+        assertEquals(0, index.getSizes(1).getBytes(ProcessSizeIndex.MASTER));
+        assertEquals(0, index.getLargestProcesses(ProcessSizeIndex.MASTER, 10).stream().filter(sizes -> sizes.getProcessId() == 1).count());
+    }
+
+    @Test
+    public void testLargestProcessesByType() {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        List<ProcessSizeIndex.ProcessSizes> master = index.getLargestProcesses(ProcessSizeIndex.MASTER, 10);
+        assertEquals(2, master.size());
+        assertEquals(2, master.get(0).getProcessId());
+        assertEquals(1, master.get(1).getProcessId());
+        List<ProcessSizeIndex.ProcessSizes> alto = index.getLargestProcesses("ocr/alto", 10);
+        assertEquals(1, alto.size());
+        assertEquals(1, alto.get(0).getProcessId());
+        assertTrue(index.getLargestProcesses(ProcessSizeIndex.SOURCE, 10).isEmpty());
+    }
+
+    @Test
+    public void testUnchangedUnitsAreSkipped() throws Exception {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        Path master = metadata.resolve("1/images/master_title_media");
+        FileTime modified = Files.getLastModifiedTime(master);
+        // overwritten in place, the folder keeps its modification time
+        Files.write(master.resolve("00000001.tif"), new byte[500]);
+        Files.setLastModifiedTime(master, modified);
+        index.crawl(10);
+        assertEquals(300, index.getSizes(1).getBytes(ProcessSizeIndex.MASTER));
+
+        Files.setLastModifiedTime(master, FileTime.fromMillis(modified.toMillis() + 10_000));
+        index.crawl(10);
+        assertEquals(500, index.getSizes(1).getBytes(ProcessSizeIndex.MASTER));
+        assertEquals(1, index.getLargestProcesses(ProcessSizeIndex.MASTER, 10).get(1).getProcessId());
+    }
+
+    @Test
+    public void testRemovedProcessesAreDropped() throws Exception {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        Files.delete(metadata.resolve("3/meta.xml"));
+        Files.delete(metadata.resolve("3"));
+        index.crawl(10);
+        assertEquals(2, index.size());
+        assertNull(index.getSizes(3));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Path indexFile = metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME);
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, indexFile);
+        index.crawl(10);
+        index.save();
+        assertTrue(Files.exists(indexFile));
+
+        ProcessSizeIndex loaded = new ProcessSizeIndex(metadata, indexFile);
+        loaded.load();
+        assertEquals(3, loaded.size());
+        assertEquals(index.getSizes(1).getUnits(), loaded.getSizes(1).getUnits());
+        assertEquals(2, loaded.getLargestProcesses(1).get(0).getProcessId());
+
+        // a damaged file results in an empty index
+        Files.write(indexFile, new byte[] { 1, 2, 3 });
+        ProcessSizeIndex damaged = new ProcessSizeIndex(metadata, indexFile);
+        damaged.load();
+        assertEquals(0, damaged.size());
+    }
+
+    @Test
+    public void testWriteAndReadStream() throws Exception {
+        ProcessSizeIndex index = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        index.crawl(10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        ProcessSizeIndex copy = new ProcessSizeIndex(metadata, metadata.resolve(ProcessSizeIndex.INDEX_FILE_NAME));
+        copy.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1010, copy.getSizes(2).getTotalBytes());
+        assertEquals(10, copy.getSizes(2).getBytes(ProcessSizeIndex.THUMBS));
+    }
+}
@@ -0,0 +1,68 @@
+package de.intranda.goobi.plugins;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the statements, parameters and transaction calls of a connection. Each statement reports one changed row per id.
+ */
+class RecordingConnection {
+
+    final List<String> statements = new ArrayList<>();
+    final List<Map<Integer, Object>> parameters = new ArrayList<>();
+    final List<String> calls = new ArrayList<>();
+    boolean autoCommit = true;
+    boolean failUpdate;
+
+    /** parameters of a statement before its ids */
+    private final int fixedParameters;
+
+    RecordingConnection(int fixedParameters) {
+        this.fixedParameters = fixedParameters;
+    }
+
+    Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "prepareStatement":
+                    statements.add((String) args[0]);
+                    return statement();
+                default:
+                    calls.add(method.getName());
+                    return null;
+            }
+        });
+    }
+
+    private PreparedStatement statement() {
+        Map<Integer, Object> values = new HashMap<>();
+        parameters.add(values);
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setInt":
+                            values.put((Integer) args[0], args[1]);
+                            return null;
+                        case "executeUpdate":
+                            calls.add("executeUpdate");
+                            if (failUpdate) {
+                                throw new SQLException("update failed");
+                            }
+                            return values.size() - fixedParameters;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,91 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class S3BatchDeleterTest {
+
+    private static final int PAGES = 2000;
+
+    private InMemoryS3DeletionClient client;
+
+    @Before
+    public void setUp() {
+        client = new InMemoryS3DeletionClient();
+        for (int i = 1; i <= PAGES; i++) {
+            client.putObject(String.format("1/images/master_fixture_media/%08d.tif", i));
+            client.putObject(String.format("1/ocr/fixture_alto/%08d.xml", i));
+        }
+        client.putObject("1/meta.xml");
+    }
+
+    @Test
+    public void testDeletePrefix() throws Exception {
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 4, 1)) {
+            assertEquals(PAGES, deleter.deletePrefix("1/images/master_fixture_media/"));
+        }
+        assertEquals(0, client.countObjects("1/images/"));
+        assertEquals(PAGES, client.countObjects("1/ocr/"));
+        assertEquals(1, client.countObjects("1/meta.xml"));
+
+        // one request per object would need 2000 requests
+        int requests = client.getListRequests() + client.getDeleteRequests();
+        assertEquals(2, client.getDeleteRequests());
+        assertTrue("Too many requests: " + requests, requests * 100 <= PAGES);
+    }
+
+    @Test
+    public void testDeleteWholeProcess() throws Exception {
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 2, 1)) {
+            assertEquals(2 * PAGES + 1, deleter.deletePrefix("1/"));
+        }
+        assertEquals(0, client.countObjects("1/"));
+        assertEquals(5, client.getDeleteRequests());
+    }
+
+    @Test
+    public void testDeleteSelectedKeys() throws Exception {
+        ContentFilter filter = new ContentFilter(DeletionTarget.MASTER, Arrays.asList("*.tif"), Arrays.asList("00000001.*"));
+        String prefix = "1/images/master_fixture_media/";
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 2, 1)) {
+            assertEquals(PAGES - 1, deleter.deletePrefix(prefix, key -> filter.matches(Paths.get(key.substring(prefix.length()))),
+                    new DeletionCounter()));
+        }
+        assertEquals(1, client.countObjects(prefix + "00000001.tif"));
+        assertEquals(1, client.countObjects(prefix));
+    }
+
+    @Test
+    public void testDeleteEmptyPrefix() throws Exception {
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 2, 1)) {
+            assertEquals(0, deleter.deletePrefix("2/"));
+        }
+        assertEquals(1, client.getListRequests());
+        assertEquals(0, client.getDeleteRequests());
+    }
+
+    @Test
+    public void testRetryThrottledRequests() throws Exception {
+        client.throttleNextRequests(3);
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 1, 1)) {
+            assertEquals(PAGES, deleter.deletePrefix("1/ocr/"));
+        }
+        assertEquals(3, client.getThrottledRequests());
+        assertEquals(0, client.countObjects("1/ocr/"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testGiveUpAfterRepeatedThrottling() throws Exception {
+        client.throttleNextRequests(100);
+        try (S3BatchDeleter deleter = new S3BatchDeleter(client, 1, 1)) {
+            deleter.deletePrefix("1/ocr/");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StepStatusWriterTest {
+
+    @Test
+    public void testSingleStatement() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(1);
+        StepStatusWriter writer = new StepStatusWriter(recorder::connection);
+        assertEquals(3, writer.updateStatus(Arrays.asList(11, 12, 13), 5));
+
+        // one round trip for all tasks within one transaction
+        assertEquals(Arrays.asList("executeUpdate", "commit", "close"), recorder.calls);
+        assertEquals(1, recorder.statements.size());
+        String sql = recorder.statements.get(0);
+        assertEquals("UPDATE schritte SET Bearbeitungsstatus = ? WHERE SchritteID IN (?, ?, ?)", sql);
+        // no other columns or tables are written
+        assertFalse(sql.contains("prozesse"));
+        assertEquals(5, recorder.parameters.get(0).get(1));
+        assertEquals(13, recorder.parameters.get(0).get(4));
+        assertTrue(recorder.autoCommit);
+    }
+
+    @Test
+    public void testNothingToUpdate() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(1);
+        assertEquals(0, new StepStatusWriter(recorder::connection).updateStatus(Collections.emptyList(), 5));
+        assertTrue(recorder.calls.isEmpty());
+    }
+
+    @Test
+    public void testLargeListIsSplit() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(1);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < IdListTransaction.MAX_IDS_PER_STATEMENT + 1; i++) {
+            ids.add(i);
+        }
+        new StepStatusWriter(recorder::connection).updateStatus(ids, 5);
+        assertEquals(Arrays.asList("executeUpdate", "executeUpdate", "commit", "close"), recorder.calls);
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        RecordingConnection recorder = new RecordingConnection(1);
+        recorder.failUpdate = true;
+        try {
+            new StepStatusWriter(recorder::connection).updateStatus(Arrays.asList(1, 2), 5);
+            fail("update must fail");
+        } catch (SQLException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("executeUpdate", "rollback", "close"), recorder.calls);
+        assertTrue(recorder.autoCommit);
+    }
+}
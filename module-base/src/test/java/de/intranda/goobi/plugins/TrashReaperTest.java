@@ -0,0 +1,65 @@
+package de.intranda.goobi.plugins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrashReaperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TrashReaper reaper;
+    private Path trash;
+
+    @Before
+    public void setUp() throws Exception {
+        trash = folder.getRoot().toPath().resolve(TrashReaper.TRASH_FOLDER_NAME);
+        reaper = new TrashReaper(trash, 2);
+    }
+
+    @After
+    public void tearDown() {
+        reaper.shutdown();
+    }
+
+    private void waitForReaper() throws InterruptedException {
+        for (int i = 0; i < 100 && (reaper.getPendingCount() > 0 || !reaper.getLeftovers().isEmpty()); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testMoveToTrash() throws Exception {
+        File master = folder.newFolder("1", "images", "master_fixture_media");
+        new File(master, "00000001.tif").createNewFile();
+
+        assertTrue(reaper.moveToTrash(master.toPath(), "1"));
+        assertFalse(master.exists());
+
+        waitForReaper();
+        assertEquals(0, reaper.getLeftovers().size());
+    }
+
+    @Test
+    public void testRescanDeletesLeftovers() throws Exception {
+        Path leftover = trash.resolve("1_fixture_media_leftover");
+        Files.createDirectories(leftover);
+        Files.createFile(leftover.resolve("00000001.tif"));
+        assertEquals(1, reaper.getLeftovers().size());
+
+        reaper.start();
+        waitForReaper();
+        assertFalse(Files.exists(leftover));
+    }
+}
@@ -0,0 +1,159 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.intranda.goobi.plugins.ParallelDirectoryDeleter;
+import de.sub.goobi.helper.NIOFileUtils;
+
+/**
+ * Compares the strategies to delete a process folder. Each iteration deletes one freshly generated process, so the single shot time is the time
+ * to delete one process with {@code 4 * pages} files.
+ *
+ * <pre>
+ * mvn package -P benchmark
+ * java -jar module-benchmark/target/benchmarks.jar DeletionBenchmark -prof gc
+ * </pre>
+ *
+ * The trees are created below {@code java.io.tmpdir}, use {@code -Djava.io.tmpdir=...} to measure a different file system.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DeletionBenchmark {
+
+    /** small, medium and large processes */
+    @Param({ "50", "500", "2000" })
+    private int pages;
+
+    @Param({ "4096" })
+    private int fileSize;
+
+    private Path workFolder;
+
+    private Path process;
+
+    private int processId;
+
+    private NIOFileUtils storageProvider;
+
+    private ParallelDirectoryDeleter singleThreadDeleter;
+
+    private ParallelDirectoryDeleter parallelDeleter;
+
+    private ParallelDirectoryDeleter allCoresDeleter;
+
+    private ParallelDirectoryDeleter relativeSingleThreadDeleter;
+
+    private ParallelDirectoryDeleter relativeParallelDeleter;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        workFolder = Files.createTempDirectory("delete-content-benchmark");
+        storageProvider = new NIOFileUtils();
+        singleThreadDeleter = new ParallelDirectoryDeleter(1);
+        parallelDeleter = new ParallelDirectoryDeleter(4);
+        allCoresDeleter = new ParallelDirectoryDeleter(Runtime.getRuntime().availableProcessors());
+        relativeSingleThreadDeleter = new ParallelDirectoryDeleter(1, true);
+        relativeParallelDeleter = new ParallelDirectoryDeleter(4, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void createProcess() throws IOException {
+        process = new ProcessTreeGenerator(pages, fileSize).createProcess(workFolder, ++processId);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeLeftovers() throws IOException {
+        deleteTree(workFolder.resolve(".trash"));
+        deleteTree(process);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        singleThreadDeleter.close();
+        parallelDeleter.close();
+        allCoresDeleter.close();
+        relativeSingleThreadDeleter.close();
+        relativeParallelDeleter.close();
+        deleteTree(workFolder);
+    }
+
+    /**
+     * the sequential deletion of the StorageProvider on the local file system, used if no parallelism is configured
+     */
+    @Benchmark
+    public void storageProviderDeleteDir() throws IOException {
+        storageProvider.deleteDir(process);
+    }
+
+    @Benchmark
+    public void parallelDeleterOneThread() throws IOException {
+        singleThreadDeleter.deleteDir(process);
+    }
+
+    @Benchmark
+    public void parallelDeleterFourThreads() throws IOException {
+        parallelDeleter.deleteDir(process);
+    }
+
+    @Benchmark
+    public void parallelDeleterAllCores() throws IOException {
+        allCoresDeleter.deleteDir(process);
+    }
+
+    /**
+     * deletion relative to the open directory handles, compare with {@link #parallelDeleterOneThread()} for the cost of the path lookups
+     */
+    @Benchmark
+    public void relativeDeleterOneThread() throws IOException {
+        relativeSingleThreadDeleter.deleteDir(process);
+    }
+
+    @Benchmark
+    public void relativeDeleterFourThreads() throws IOException {
+        relativeParallelDeleter.deleteDir(process);
+    }
+
+    /**
+     * the part of the trash area that is executed within the step, the physical deletion happens in the background
+     */
+    @Benchmark
+    public void moveToTrash() throws IOException {
+        Path trash = Files.createDirectories(workFolder.resolve(".trash"));
+        Files.move(process, trash.resolve(process.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void deleteTree(Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.intranda.goobi.plugins.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Creates synthetic process folders that are shaped like the ones of Goobi workflow: master and media images, thumbnails and ALTO files with one
+ * file per page in each folder.
+ */
+public class ProcessTreeGenerator {
+
+    private final int pages;
+
+    private final byte[] content;
+
+    /**
+     * @param pages number of pages, i.e. files per folder
+     * @param fileSize size of each file in bytes
+     */
+    public ProcessTreeGenerator(int pages, int fileSize) {
+        this.pages = pages;
+        content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+    }
+
+    /**
+     * Create a process folder with the given id below the parent folder
+     *
+     * @param parent folder that contains the process folders
+     * @param processId id of the process, used as folder name
+     * @return the process folder
+     * @throws IOException
+     */
+    public Path createProcess(Path parent, int processId) throws IOException {
+        Path process = parent.resolve(String.valueOf(processId));
+        String title = "process_" + processId;
+        Path images = process.resolve("images");
+        Path master = Files.createDirectories(images.resolve("master_" + title + "_media"));
+        Path media = Files.createDirectories(images.resolve(title + "_media"));
+        Path thumbs = Files.createDirectories(process.resolve("thumbs").resolve(title + "_media_800"));
+        Path alto = Files.createDirectories(process.resolve("ocr").resolve(title + "_alto"));
+        for (int page = 1; page <= pages; page++) {
+            String name = String.format("%08d", page);
+            Files.write(master.resolve(name + ".tif"), content);
+            Files.write(media.resolve(name + ".jpg"), content);
+            Files.write(thumbs.resolve(name + ".jpg"), content);
+            Files.write(alto.resolve(name + ".xml"), content);
+        }
+        return process;
+    }
+}